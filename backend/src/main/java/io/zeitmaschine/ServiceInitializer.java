@@ -59,7 +59,7 @@ public class ServiceInitializer {
                 // healthIndicators return a Health object, we need error for retry
                 .flatMap(health -> Status.UP.equals(health.getStatus()) ? Mono.just(health) : Mono.error(new RuntimeException("Elastic not ready")))
                 .retryWhen(Retry.fixedDelay(4, Duration.of(3, SECONDS)))
-                .doOnSuccess(health -> indexer.initIndex())
-                .subscribe();
+                .flatMap(health -> indexer.initIndex())
+                .subscribe(null, e -> LOG.error("Failed to initialize elastic index.", e));
     }
 }
\ No newline at end of file
@@ -1,11 +1,8 @@
 package io.zeitmaschine;
 
-import io.zeitmaschine.index.IndexerConfig;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.cloud.gateway.route.RouteLocator;
-import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.io.Resource;
 import org.springframework.web.reactive.function.server.RouterFunction;
@@ -31,14 +28,6 @@ public class ZeitmaschineApplication {
                 .andRoute(GET("/callback").and(accept(TEXT_HTML)), request -> ServerResponse.ok().bodyValue(indexHtml));
     }
 
-    @Bean
-    public RouteLocator apiGateway(RouteLocatorBuilder builder, IndexerConfig indexConfig) {
-        return builder.routes()
-                .route("elasticsearch", r -> r.path("/zeitmaschine/**")
-                        .uri(indexConfig.getHost()))
-                .build();
-    }
-
     public static void main(String[] args) {
         SpringApplication.run(ZeitmaschineApplication.class, args);
     }
@@ -0,0 +1,127 @@
+package io.zeitmaschine.catalog;
+
+import static io.zeitmaschine.s3.Processor.META_VERSION;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.zeitmaschine.s3.S3Entry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Local catalog of the bucket's objects, updated with every object indexed. Objects whose ETag and processed version
+ * are already in the catalog don't need to be processed or indexed again.
+ */
+@Component
+public class Catalog implements DisposableBean {
+
+    private final static Logger LOG = LoggerFactory.getLogger(Catalog.class.getName());
+
+    private final MVStore store;
+    private final MVMap<String, String> entries;
+    private final MVMap<String, String> checkpoints;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    public Catalog(CatalogConfig config) {
+        this(config.getPath());
+        LOG.info("Catalog in '{}'.", config.getPath() != null ? config.getPath() : "memory");
+    }
+
+    // Used for test, in memory if the file name is null
+    Catalog(String fileName) {
+        this.store = new MVStore.Builder()
+                .fileName(fileName)
+                .compress()
+                .open();
+        this.entries = store.openMap("catalog");
+        this.checkpoints = store.openMap("checkpoints");
+    }
+
+    public void update(S3Entry entry) {
+        try {
+            entries.put(entry.key(), objectMapper.writeValueAsString(CatalogEntry.from(entry)));
+        } catch (JsonProcessingException e) {
+            LOG.error("Failed to catalog '{}'.", entry.key(), e);
+        }
+    }
+
+    public void remove(String key) {
+        entries.remove(key);
+    }
+
+    public Optional<CatalogEntry> get(String key) {
+        return Optional.ofNullable(entries.get(key)).flatMap(this::read);
+    }
+
+    /**
+     * True if the object is new, changed or its metadata was processed by another version.
+     */
+    public boolean changed(S3Entry entry) {
+        return get(entry.key())
+                .map(cataloged -> !Objects.equals(cataloged.etag(), entry.etag())
+                        || !Objects.equals(cataloged.version(), entry.metaData().get(META_VERSION)))
+                .orElse(true);
+    }
+
+    public Flux<CatalogEntry> entries() {
+        return Flux.fromIterable(entries.keySet())
+                .flatMap(key -> Mono.justOrEmpty(get(key)));
+    }
+
+    // progress of long running jobs, kept next to the catalog to survive restarts
+    public Optional<String> checkpoint(String name) {
+        return Optional.ofNullable(checkpoints.get(name));
+    }
+
+    public void checkpoint(String name, String checkpoint) {
+        checkpoints.put(name, checkpoint);
+    }
+
+    public void removeCheckpoint(String name) {
+        checkpoints.remove(name);
+    }
+
+    public Map<String, String> checkpoints(String prefix) {
+        return checkpoints.entrySet().stream()
+                .filter(checkpoint -> checkpoint.getKey().startsWith(prefix))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    public CatalogStats stats() {
+        CatalogStats stats = new CatalogStats();
+        entries.values().stream()
+                .map(this::read)
+                .flatMap(Optional::stream)
+                .forEach(stats::add);
+        return stats;
+    }
+
+    private Optional<CatalogEntry> read(String json) {
+        try {
+            return Optional.of(objectMapper.readValue(json, CatalogEntry.class));
+        } catch (JsonProcessingException e) {
+            LOG.error("Failed to read catalog entry, ignoring it.", e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        store.close();
+    }
+}
@@ -0,0 +1,20 @@
+package io.zeitmaschine.catalog;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "catalog")
+public class CatalogConfig {
+
+    // file of the catalog, kept in memory only if not set
+    private String path;
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+}
@@ -0,0 +1,30 @@
+package io.zeitmaschine.catalog;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+@RestController
+@RequestMapping("/catalog")
+public class CatalogEndpoint {
+
+    private final Catalog catalog;
+
+    @Autowired
+    public CatalogEndpoint(Catalog catalog) {
+        this.catalog = catalog;
+    }
+
+    // walks the whole catalog, off the event loop
+    @GetMapping("/stats")
+    public Mono<ResponseEntity<CatalogStats>> stats() {
+        return Mono.fromCallable(catalog::stats)
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(ResponseEntity::ok);
+    }
+}
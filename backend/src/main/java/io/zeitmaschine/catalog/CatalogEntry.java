@@ -0,0 +1,45 @@
+package io.zeitmaschine.catalog;
+
+import static io.zeitmaschine.s3.Processor.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import io.zeitmaschine.s3.S3Entry;
+
+/**
+ * What the catalog knows about an object, enough to index it without going to s3.
+ */
+public record CatalogEntry(String key, String etag, long size, String contentType, String version, Long created, Double lon, Double lat) {
+
+    static CatalogEntry from(S3Entry entry) {
+        Optional<S3Entry.Location> location = Optional.ofNullable(entry.location());
+        return new CatalogEntry(entry.key(), entry.etag(), entry.size(), entry.contentType(),
+                entry.metaData().get(META_VERSION),
+                Optional.ofNullable(entry.created()).map(date -> date.getTime()).orElse(null),
+                location.map(S3Entry.Location::lon).orElse(null),
+                location.map(S3Entry.Location::lat).orElse(null));
+    }
+
+    public S3Entry toS3Entry() {
+        Map<String, String> metaData = new HashMap<>();
+        if (version != null) {
+            metaData.put(META_VERSION, version);
+        }
+        if (created != null) {
+            metaData.put(META_CREATION_DATE, String.valueOf(created));
+        }
+        if (lon != null && lat != null) {
+            metaData.put(META_LOCATION_LON, String.valueOf(lon));
+            metaData.put(META_LOCATION_LAT, String.valueOf(lat));
+        }
+        return S3Entry.builder()
+                .key(key)
+                .etag(etag)
+                .size(size)
+                .contentType(contentType)
+                .metaData(metaData)
+                .build();
+    }
+}
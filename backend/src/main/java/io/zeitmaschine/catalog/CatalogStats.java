@@ -0,0 +1,57 @@
+package io.zeitmaschine.catalog;
+
+import java.time.Instant;
+
+import io.zeitmaschine.s3.Processor;
+
+/**
+ * Summary over all cataloged objects, computed without listing the bucket.
+ */
+public class CatalogStats {
+
+    private long objects;
+    private long size;
+    private long processed;
+    private long located;
+    private Long oldest;
+    private Long newest;
+
+    void add(CatalogEntry entry) {
+        objects++;
+        size += entry.size();
+        if (Processor.META_VERSION_CURRENT.equals(entry.version())) {
+            processed++;
+        }
+        if (entry.lon() != null && entry.lat() != null) {
+            located++;
+        }
+        if (entry.created() != null) {
+            oldest = oldest == null ? entry.created() : Math.min(oldest, entry.created());
+            newest = newest == null ? entry.created() : Math.max(newest, entry.created());
+        }
+    }
+
+    public long getObjects() {
+        return objects;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public long getLocated() {
+        return located;
+    }
+
+    public Instant getOldest() {
+        return oldest != null ? Instant.ofEpochMilli(oldest) : null;
+    }
+
+    public Instant getNewest() {
+        return newest != null ? Instant.ofEpochMilli(newest) : null;
+    }
+}
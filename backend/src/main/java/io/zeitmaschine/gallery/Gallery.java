@@ -0,0 +1,102 @@
+package io.zeitmaschine.gallery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
+
+import io.zeitmaschine.index.Indexer;
+import reactor.core.publisher.Mono;
+
+/**
+ * Pages through the indexed images newest first, images without a creation date last. Pages continue after the
+ * sort values of the previous page's last image (search_after), deep pages cost the same as the first one. Ties are
+ * broken by name, images created at the same time are neither skipped nor repeated.
+ */
+@Service
+public class Gallery {
+
+    // the missing creation date of an image sorts as the oldest
+    private static final List<Map<String, Object>> SORT = List.of(
+            Map.of("created", Map.of("order", "desc", "missing", "_last", "unmapped_type", "date")),
+            Map.of("name.keyword", Map.of("order", "asc", "unmapped_type", "keyword")));
+    private static final List<String> SOURCE = List.of("name", "created");
+    private static final TypeReference<List<Object>> SORT_VALUES = new TypeReference<>() {
+    };
+
+    private final Indexer indexer;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    public Gallery(Indexer indexer) {
+        this.indexer = indexer;
+    }
+
+    /**
+     * @param cursor the previous page's next cursor, null for the first page.
+     * @return an error with {@link IllegalArgumentException} if the cursor isn't one of ours.
+     */
+    public Mono<GalleryPage> page(int size, String cursor) {
+        return Mono.fromCallable(() -> query(size, cursor))
+                .flatMap(indexer::search)
+                .map(response -> read(size, response));
+    }
+
+    private Map<String, Object> query(int size, String cursor) {
+        Map<String, Object> query = new LinkedHashMap<>();
+        query.put("size", size);
+        // counting the hits costs, nobody looks at them
+        query.put("track_total_hits", false);
+        query.put("_source", SOURCE);
+        query.put("sort", SORT);
+        if (cursor != null) {
+            query.put("search_after", decode(cursor));
+        }
+        return query;
+    }
+
+    private GalleryPage read(int size, String response) {
+        List<Map<String, Object>> hits = JsonPath.read(response, "$.hits.hits");
+        List<GalleryPage.Image> images = new ArrayList<>(hits.size());
+        for (Map<String, Object> hit : hits) {
+            Map<String, Object> source = JsonPath.read(hit, "$._source");
+            images.add(new GalleryPage.Image((String) source.get("name"), (String) source.get("created")));
+        }
+        // a short page is the last one
+        String next = hits.size() < size ? null : encode(JsonPath.read(hits.get(hits.size() - 1), "$.sort"));
+        return new GalleryPage(images, next);
+    }
+
+    /*
+    The cursor is the sort values of the last image, opaque to the client.
+     */
+    String encode(List<Object> sort) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(sort));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to write cursor.", e);
+        }
+    }
+
+    List<Object> decode(String cursor) {
+        try {
+            List<Object> sort = objectMapper.readValue(Base64.getUrlDecoder().decode(cursor), SORT_VALUES);
+            if (sort.size() != SORT.size() || !(sort.get(0) instanceof Number) || !(sort.get(1) instanceof String)) {
+                throw new IllegalArgumentException("Invalid cursor '%s'.".formatted(cursor));
+            }
+            return sort;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid cursor '%s'.".formatted(cursor), e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package io.zeitmaschine.gallery;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * The gallery as the frontend scrolls through it, page by page. Pass the {@code next} cursor of a page to get the
+ * following one.
+ */
+@RestController
+@RequestMapping("/gallery")
+public class GalleryEndpoint {
+
+    private static final int MAX_SIZE = 500;
+
+    private final Gallery gallery;
+
+    @Autowired
+    public GalleryEndpoint(Gallery gallery) {
+        this.gallery = gallery;
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<GalleryPage>> page(@RequestParam(defaultValue = "64") int size, @RequestParam(required = false) String cursor) {
+        if (size < 1 || size > MAX_SIZE) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return gallery.page(size, cursor)
+                .map(ResponseEntity::ok)
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+}
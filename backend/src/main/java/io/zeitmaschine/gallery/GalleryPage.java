@@ -0,0 +1,17 @@
+package io.zeitmaschine.gallery;
+
+import java.util.List;
+
+/**
+ * A page of the gallery, newest first.
+ *
+ * @param next cursor of the following page, null at the end of the gallery.
+ */
+public record GalleryPage(List<Image> images, String next) {
+
+    /**
+     * @param created as indexed, null if the image has no creation date.
+     */
+    public record Image(String name, String created) {
+    }
+}
@@ -0,0 +1,62 @@
+package io.zeitmaschine.image;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Component
+@ConfigurationProperties(prefix = "image")
+public class ImageConfig {
+
+    // in-memory budget per rendition, dimensions without a budget are served from the cache bucket only.
+    private Map<Dimension, DataSize> cache = new EnumMap<>(Map.of(
+            Dimension.THUMBNAIL, DataSize.ofMegabytes(64),
+            Dimension.SMALL, DataSize.ofMegabytes(128)));
+    // renditions of a key never change, clients and proxies may keep them for long. Originals may be replaced, without
+    // a max-age they are revalidated with their ETag.
+    private Map<Dimension, Duration> maxAge = new EnumMap<>(Map.of(
+            Dimension.THUMBNAIL, Duration.ofDays(365),
+            Dimension.SMALL, Duration.ofDays(365),
+            Dimension.MEDIUM, Duration.ofDays(365)));
+    // images require authentication, only allow shared caches (CDN) if they honour it.
+    private boolean sharedCache = false;
+    // local copy of the media bucket, the objects as plain files under their keys (e.g. synced with 'mc mirror').
+    // Originals found there are sent from disk. Not minio's data directory, it keeps objects as xl.meta and parts.
+    private String originals;
+
+    public Map<Dimension, DataSize> getCache() {
+        return cache;
+    }
+
+    public void setCache(Map<Dimension, DataSize> cache) {
+        this.cache = cache;
+    }
+
+    public Map<Dimension, Duration> getMaxAge() {
+        return maxAge;
+    }
+
+    public void setMaxAge(Map<Dimension, Duration> maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    public boolean isSharedCache() {
+        return sharedCache;
+    }
+
+    public void setSharedCache(boolean sharedCache) {
+        this.sharedCache = sharedCache;
+    }
+
+    public String getOriginals() {
+        return originals;
+    }
+
+    public void setOriginals(String originals) {
+        this.originals = originals;
+    }
+}
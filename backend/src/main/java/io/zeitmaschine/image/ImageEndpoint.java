@@ -1,13 +1,26 @@
 package io.zeitmaschine.image;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -15,22 +28,124 @@ import reactor.core.publisher.Mono;
 public class ImageEndpoint {
 
     private final ImageService imageService;
+    private final ImageConfig config;
 
     @Autowired
-    public ImageEndpoint(ImageService imageService) {
+    public ImageEndpoint(ImageService imageService, ImageConfig config) {
         this.imageService = imageService;
+        this.config = config;
     }
 
+    /*
+    The body is only subscribed if the ETag doesn't match If-None-Match. A 304 of a rendition in memory doesn't go to
+    s3, otherwise it costs a stat of the original.
+    See org.springframework.web.reactive.result.method.annotation.ResponseEntityResultHandler
+     */
     @GetMapping(value = "/{dimension}", produces = MediaType.IMAGE_JPEG_VALUE)
-    public Mono<Resource> image(@PathVariable String dimension, @RequestParam String name) {
+    public Mono<ResponseEntity<Flux<DataBuffer>>> image(@PathVariable String dimension, @RequestParam String name) {
 
         // https://stackoverflow.com/questions/51837086/request-for-reactive-server-response-with-image-content-type-sample
         // https://stackoverflow.com/questions/49259156/spring-webflux-serve-files-from-controller
         try {
-            return imageService.getImageByDimension(name, Dimension.valueOf(dimension.toUpperCase()));
+            Dimension dim = Dimension.valueOf(dimension.toUpperCase());
+            return imageService.image(name, dim)
+                    .map(image -> {
+                        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                                .header(HttpHeaders.CACHE_CONTROL, cacheControl(dim));
+                        if (image.etag() != null) {
+                            response.eTag(image.etag());
+                        }
+                        return response.body(image.content());
+                    })
+                    .defaultIfEmpty(ResponseEntity.notFound().build());
         } catch (Exception e) {
             // TODO this leaks internals. Still? - Can we just remove the catch?
             return Mono.error(new IllegalArgumentException("Resource not found"));
         }
     }
+
+    /*
+    Originals are passed through as they are, from local disk (sendfile) if there's a copy, otherwise streamed from s3.
+    A single byte range is served as 206 so downloads can be resumed, multiple ranges get the whole object.
+     */
+    @GetMapping(value = "/original")
+    public Mono<Void> original(@RequestParam String name, ServerWebExchange exchange) {
+        ServerHttpResponse response = exchange.getResponse();
+        return imageService.original(name)
+                .flatMap(original -> {
+                    String etag = ImageService.etag(original, Dimension.ORIGINAL);
+                    if (exchange.checkNotModified(etag)) {
+                        return response.setComplete();
+                    }
+
+                    HttpHeaders headers = response.getHeaders();
+                    headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+                    headers.set(HttpHeaders.CACHE_CONTROL, cacheControl(Dimension.ORIGINAL));
+                    if (original.contentType() != null) {
+                        headers.set(HttpHeaders.CONTENT_TYPE, original.contentType());
+                    }
+
+                    long size = original.size();
+                    if (size == 0) {
+                        // nothing to read, ranges of an empty object aren't satisfiable anyway
+                        headers.setContentLength(0);
+                        return response.setComplete();
+                    }
+                    long offset = 0;
+                    long length = size;
+                    Optional<HttpRange> range = range(exchange, etag);
+                    if (range.isPresent()) {
+                        offset = range.get().getRangeStart(size);
+                        if (offset >= size) {
+                            response.setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+                            headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                            return response.setComplete();
+                        }
+                        long end = range.get().getRangeEnd(size);
+                        length = end - offset + 1;
+                        response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+                        headers.set(HttpHeaders.CONTENT_RANGE, "bytes %d-%d/%d".formatted(offset, end, size));
+                    }
+                    headers.setContentLength(length);
+
+                    long position = offset;
+                    long count = length;
+                    return imageService.local(original)
+                            .filter(path -> response instanceof ZeroCopyHttpOutputMessage)
+                            .map(path -> ((ZeroCopyHttpOutputMessage) response).writeWith(path, position, count))
+                            .orElseGet(() -> response.writeWith(imageService.original(original, position, count)));
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    response.setStatusCode(HttpStatus.NOT_FOUND);
+                    return response.setComplete();
+                }));
+    }
+
+    /*
+    The range is ignored if it's malformed, asks for several parts or If-Range doesn't match anymore.
+     */
+    private static Optional<HttpRange> range(ServerWebExchange exchange, String etag) {
+        HttpHeaders headers = exchange.getRequest().getHeaders();
+        String ifRange = headers.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return Optional.empty();
+        }
+        try {
+            List<HttpRange> ranges = headers.getRange();
+            return ranges.size() == 1 ? Optional.of(ranges.get(0)) : Optional.empty();
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /*
+    Renditions are immutable, an original may be replaced under its key and is revalidated with its ETag unless it's
+    given a max-age. CacheControl#immutable comes with spring 6.
+     */
+    private String cacheControl(Dimension dimension) {
+        Duration maxAge = config.getMaxAge().getOrDefault(dimension, Duration.ZERO);
+        CacheControl cacheControl = maxAge.isZero() ? CacheControl.noCache() : CacheControl.maxAge(maxAge);
+        cacheControl = config.isSharedCache() ? cacheControl.cachePublic() : cacheControl.cachePrivate();
+        return dimension == Dimension.ORIGINAL || maxAge.isZero() ? cacheControl.getHeaderValue() : cacheControl.getHeaderValue() + ", immutable";
+    }
 }
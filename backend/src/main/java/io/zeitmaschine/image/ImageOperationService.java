@@ -1,46 +1,67 @@
 package io.zeitmaschine.image;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.zeitmaschine.metrics.CallMetrics;
+import io.zeitmaschine.s3.S3Repository;
+import io.zeitmaschine.tracing.Spans;
+import reactor.core.publisher.Flux;
 
 @Service
 public class ImageOperationService {
 
-    // https://github.com/spring-projects/spring-framework/issues/23961
-    // mobile shots around 3MB, Fujifilm 5MB, RAW 25.. 20MB is a lot leeway.
-    // serverside: https://github.com/spring-projects/spring-framework/blob/master/src/docs/asciidoc/web/webflux.adoc#webflux-config-message-codecs
-    private static final int MAX_EXCHANGE_MEMORY_SIZE = 1024 * 1024 * 20;
+    private static final int BUFFER_SIZE = 8192;
 
     private final WebClient webClient;
+    private final S3Repository s3Repository;
+    // imaginary.calls, imaginary.bytes and imaginary.errors by operation and dimension
+    private final CallMetrics metrics;
+
+    public ImageOperationService(ImageOperationConfig config, S3Repository s3Repository, MeterRegistry registry) {
+        this(config, s3Repository, registry, Spans.NOOP);
+    }
 
     @Autowired
-    public ImageOperationService(ImageOperationConfig config) {
+    public ImageOperationService(ImageOperationConfig config, S3Repository s3Repository, MeterRegistry registry, Spans spans) {
         this.webClient = WebClient
                 .builder()
-                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(MAX_EXCHANGE_MEMORY_SIZE))
                 .baseUrl(config.getHost())
                 .build();
+        this.s3Repository = s3Repository;
+        this.metrics = new CallMetrics("imaginary", registry, spans);
     }
 
-    public Mono<Resource> resize(Resource image, Dimension dimension) {
-        return webClient
+    /*
+    The rendition is streamed in the (pooled) buffers netty received it in, callers have to release them.
+     */
+    public Flux<DataBuffer> resize(Resource image, Dimension dimension) {
+        Tags tags = Tags.of("operation", "resize", "dimension", dimension.toString());
+        // includes reading the original from s3 while sending it
+        return metrics.time(tags, webClient
                 .post()
                 .uri(uriBuilder -> uriBuilder
                         .path("resize")
                         .queryParam("width", dimension.getSize())
                         .build())
                 .header(HttpHeaders.CONTENT_TYPE, MediaType.IMAGE_JPEG_VALUE)
-                .body(BodyInserters.fromResource(image))
+                // the image is usually a s3 stream, read it on the repository's workers instead of the event loop
+                .body(BodyInserters.fromDataBuffers(DataBufferUtils.readInputStream(image::getInputStream, DefaultDataBufferFactory.sharedInstance, BUFFER_SIZE)
+                        .doOnNext(buffer -> metrics.sent(tags, buffer.readableByteCount()))
+                        .subscribeOn(s3Repository.scheduler())))
                 .accept(MediaType.IMAGE_JPEG)
                 .retrieve()
-                .bodyToMono(byte[].class)
-                .map(bytes -> new ByteArrayResource(bytes));
+                .bodyToFlux(DataBuffer.class)
+                .doOnNext(buffer -> metrics.received(tags, buffer.readableByteCount())));
     }
 }
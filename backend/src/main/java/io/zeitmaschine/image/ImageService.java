@@ -1,51 +1,226 @@
 package io.zeitmaschine.image;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.zeitmaschine.s3.S3Config;
+import io.zeitmaschine.s3.S3Entry;
 import io.zeitmaschine.s3.S3Repository;
+import io.zeitmaschine.s3.WriteBehindQueue;
+import io.zeitmaschine.tracing.Spans;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
 
 @Service
-public class ImageService {
+public class ImageService implements DisposableBean {
+
+    private static final int BUFFER_SIZE = 8192;
+
     private final String bucket;
     private final String cacheBucket;
+    private final Optional<Path> originals;
+    private final DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
 
     private S3Repository s3Repository;
     private ImageOperationService operationService;
+    private RenditionCache renditions;
+    private final WriteBehindQueue cacheWrites;
+    private final Map<String, Mono<Rendition>> inFlight = new ConcurrentHashMap<>();
+    private final Spans spans;
+
+    public ImageService(S3Repository s3Repository, S3Config config, ImageConfig imageConfig, ImageOperationService operationService, RenditionCache renditions, MeterRegistry registry) {
+        this(s3Repository, config, imageConfig, operationService, renditions, registry, Spans.NOOP);
+    }
 
     @Autowired
-    public ImageService(S3Repository s3Repository, S3Config config, ImageOperationService operationService) {
+    public ImageService(S3Repository s3Repository, S3Config config, ImageConfig imageConfig, ImageOperationService operationService, RenditionCache renditions, MeterRegistry registry, Spans spans) {
         this.s3Repository = s3Repository;
         this.operationService = operationService;
+        this.renditions = renditions;
         this.bucket = config.getBucket();
         this.cacheBucket = config.getCacheBucket();
+        this.originals = Optional.ofNullable(imageConfig.getOriginals())
+                .map(root -> Paths.get(root).toAbsolutePath().normalize());
+        this.cacheWrites = new WriteBehindQueue("cache-bucket", config.getWriteBehind(), registry);
+        this.spans = spans;
+    }
+
+    // renditions still pending are written to the cache bucket before going down
+    @Override
+    public void destroy() {
+        cacheWrites.shutdown();
+    }
+
+    /**
+     * A rendition with its strong ETag, derived from the original's. A rendition in memory is served without asking s3,
+     * otherwise the original's metadata is fetched once for the ETag and the rendering.
+     *
+     * @return empty if there's no such original.
+     */
+    public Mono<Tagged> image(String key, Dimension dimension) {
+        return Mono.defer(() -> renditions.get(key, dimension)
+                .map(cached -> Mono.just(new Tagged(cached.etag(), Flux.defer(() -> Flux.just(bufferFactory.wrap(cached.content()))))))
+                .orElseGet(() -> s3Repository.get(bucket, key)
+                        .map(original -> {
+                            String etag = etag(original, dimension);
+                            return new Tagged(etag, remember(key, dimension, etag, load(original, dimension)));
+                        })));
+    }
+
+    /**
+     * @param etag    null if the original has none.
+     * @param content only loaded once subscribed, e.g. not for a 304.
+     */
+    public record Tagged(String etag, Flux<DataBuffer> content) {
+    }
+
+    static String etag(S3Entry original, Dimension dimension) {
+        return original.etag() != null ? "\"%s-%s\"".formatted(original.etag(), dimension) : null;
+    }
+
+    /**
+     * The original's metadata, its content is read with {@link #original(S3Entry, long, long)}.
+     */
+    public Mono<S3Entry> original(String key) {
+        return s3Repository.get(bucket, key);
+    }
+
+    /**
+     * Streams a range of the original as it is, without going over imaginary.
+     */
+    public Flux<DataBuffer> original(S3Entry original, long offset, long length) {
+        return Flux.deferContextual(context -> DataBufferUtils.readInputStream(spans.wrap(context, () -> original.rangeReader().read(offset, length)), bufferFactory, BUFFER_SIZE))
+                .subscribeOn(s3Repository.scheduler());
+    }
+
+    /**
+     * The original on local disk, if there is an up-to-date copy: same size and not older than the object in s3, a
+     * replaced original is streamed from s3 until the copy is synced again.
+     */
+    public Optional<Path> local(S3Entry original) {
+        return originals
+                .map(root -> root.resolve(original.key()).normalize())
+                // don't let keys escape the root
+                .filter(path -> path.startsWith(originals.get()))
+                .filter(path -> {
+                    try {
+                        return original.lastModified() != null
+                                && Files.isRegularFile(path)
+                                && Files.size(path) == original.size()
+                                && !Files.getLastModifiedTime(path).toInstant().isBefore(original.lastModified());
+                    } catch (IOException e) {
+                        return false;
+                    }
+                });
+    }
+
+    private Flux<DataBuffer> load(S3Entry original, Dimension dimension) {
+        return loadCached(original.key(), dimension).switchIfEmpty(Flux.defer(() -> rendered(original, dimension)));
     }
 
-    public Mono<Resource> getImageByDimension(String key, Dimension dimension) {
-        return loadCached(key, dimension).switchIfEmpty(Mono.defer(() ->
-                s3Repository.get(bucket, key)
-                        // https://stackoverflow.com/questions/53595420/correct-way-of-throwing-exceptions-with-reactor
-                        .switchIfEmpty(Mono.error(new RuntimeException(String.format("Resource not found '%s'.", key))))
-                        .flatMap(entry -> operationService.resize(entry.resourceSupplier().get(), dimension))
-                        .doOnSuccess(res -> cache(key, res, dimension))));
+    /*
+    A late joiner of a flight that already released its rendition renders again. The flight's cache write is written
+    behind, it may still be queued or was dropped, the cache bucket isn't asked again.
+     */
+    private Flux<DataBuffer> rendered(S3Entry original, Dimension dimension) {
+        return render(original, dimension)
+                .flatMapMany(rendition -> rendition.share()
+                        .map(Flux::just)
+                        .orElseGet(() -> rendered(original, dimension)));
     }
 
-    private void cache(String key, Resource thumbnail, Dimension dimension) {
-        s3Repository.put(cacheBucket, getThumbName(key, dimension), thumbnail, MediaType.IMAGE_JPEG_VALUE);
+    /*
+    Concurrent misses of the same rendition share a single resize and cache write. The flight is dropped and its
+    buffer released once it terminated, failed renditions are retried by the next request.
+     */
+    private Mono<Rendition> render(S3Entry original, Dimension dimension) {
+        String key = original.key();
+        return inFlight.computeIfAbsent(getThumbName(key, dimension), name -> {
+            AtomicReference<Rendition> rendered = new AtomicReference<>();
+            // the original is requested from s3 right away, with the request's span in scope
+            return Mono.deferContextual(context -> Mono.fromCallable(spans.wrap(context, () -> original.resourceSupplier().get())))
+                    .flatMap(resource -> DataBufferUtils.join(operationService.resize(resource, dimension)))
+                    .map(Rendition::new)
+                    .doOnNext(rendered::set)
+                    .transformDeferredContextual((rendition, context) -> rendition.doOnNext(r -> cache(key, r, dimension, context)))
+                    .doFinally(signal -> {
+                        inFlight.remove(name);
+                        Optional.ofNullable(rendered.get()).ifPresent(Rendition::release);
+                    })
+                    .cache();
+        });
+    }
+
+    /*
+    Renditions with an in-memory budget are small enough to be aggregated, everything else is streamed.
+     */
+    private Flux<DataBuffer> remember(String key, Dimension dimension, String etag, Flux<DataBuffer> rendition) {
+        if (!renditions.enabled(dimension)) {
+            return rendition;
+        }
+        return DataBufferUtils.join(rendition)
+                .map(buffer -> {
+                    byte[] bytes = new byte[buffer.readableByteCount()];
+                    buffer.read(bytes);
+                    DataBufferUtils.release(buffer);
+                    renditions.put(key, dimension, etag, bytes);
+                    return bufferFactory.wrap(bytes);
+                })
+                .flux();
+    }
+
+    /*
+    The response doesn't wait for the cache bucket, the write holds its own slice of the rendition until it's done.
+     */
+    private void cache(String key, Rendition rendition, Dimension dimension, ContextView context) {
+        String name = getThumbName(key, dimension);
+        rendition.share().map(Rendition::new).ifPresent(copy -> {
+            boolean queued = cacheWrites.submit(name, spans.wrap(context, () -> {
+                try {
+                    s3Repository.put(cacheBucket, name, copy, MediaType.IMAGE_JPEG_VALUE);
+                } finally {
+                    copy.release();
+                }
+            }));
+            if (!queued) {
+                copy.release();
+            }
+        });
     }
 
     private static String getThumbName(String key, Dimension dimension) {
         return Paths.get(dimension.name(), key).toString();
     }
 
-    private Mono<Resource> loadCached(String key, Dimension dimension) {
+    private Flux<DataBuffer> loadCached(String key, Dimension dimension) {
         return s3Repository.get(cacheBucket, getThumbName(key, dimension))
-                .map(entry -> entry.resourceSupplier().get());
+                .flatMapMany(entry -> read(entry.resourceSupplier()));
+    }
+
+    /*
+    Reading the object's stream blocks, hence it's read on a worker instead of the thread writing the response.
+     */
+    private Flux<DataBuffer> read(Supplier<Resource> resource) {
+        return Flux.deferContextual(context -> DataBufferUtils.readInputStream(spans.wrap(context, () -> resource.get().getInputStream()), bufferFactory, BUFFER_SIZE))
+                .subscribeOn(s3Repository.scheduler());
     }
 }
@@ -0,0 +1,57 @@
+package io.zeitmaschine.image;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+/**
+ * A rendered image held in the (pooled) buffer it was received in. Responses and the cache upload each get their
+ * own retained slice, the content is never copied.
+ */
+class Rendition extends AbstractResource {
+
+    private final DataBuffer buffer;
+    private boolean released;
+
+    Rendition(DataBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * A slice to be released by the consumer, empty if the rendition was already released.
+     */
+    synchronized Optional<DataBuffer> share() {
+        if (released) {
+            return Optional.empty();
+        }
+        return Optional.of(buffer.retainedSlice(0, buffer.readableByteCount()));
+    }
+
+    synchronized void release() {
+        if (!released) {
+            released = true;
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return share()
+                .map(slice -> slice.asInputStream(true))
+                .orElseThrow(() -> new IOException("Rendition already released."));
+    }
+
+    @Override
+    public long contentLength() {
+        return buffer.readableByteCount();
+    }
+
+    @Override
+    public String getDescription() {
+        return "Rendition [%d bytes]".formatted(buffer.readableByteCount());
+    }
+}
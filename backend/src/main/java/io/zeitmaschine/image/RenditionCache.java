@@ -0,0 +1,76 @@
+package io.zeitmaschine.image;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * In-memory tier of rendered images in front of the cache bucket, one weighed cache per {@link Dimension}.
+ */
+@Component
+public class RenditionCache {
+
+    private final static Logger LOG = LoggerFactory.getLogger(RenditionCache.class.getName());
+
+    private final Map<Dimension, Cache<String, Cached>> caches = new EnumMap<>(Dimension.class);
+
+    @Autowired
+    public RenditionCache(ImageConfig config, MeterRegistry registry) {
+        config.getCache().forEach((dimension, budget) -> {
+            if (budget.toBytes() <= 0) {
+                return;
+            }
+            Cache<String, Cached> cache = Caffeine.newBuilder()
+                    .maximumWeight(budget.toBytes())
+                    .weigher((String key, Cached rendition) -> key.length() + rendition.weight())
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(registry, cache, "renditions", "dimension", dimension.toString());
+            caches.put(dimension, cache);
+            LOG.info("Caching {} renditions in memory up to {}.", dimension, budget);
+        });
+    }
+
+    public boolean enabled(Dimension dimension) {
+        return caches.containsKey(dimension);
+    }
+
+    public Optional<Cached> get(String key, Dimension dimension) {
+        return Optional.ofNullable(caches.get(dimension))
+                .map(cache -> cache.getIfPresent(key));
+    }
+
+    public void put(String key, Dimension dimension, String etag, byte[] rendition) {
+        Cache<String, Cached> cache = caches.get(dimension);
+        if (cache != null) {
+            cache.put(key, new Cached(etag, rendition));
+        }
+    }
+
+    /**
+     * A rendition with the ETag it was served with, hits and 304s are answered without asking s3.
+     *
+     * @param etag null if the original has none.
+     */
+    public record Cached(String etag, byte[] content) {
+
+        int weight() {
+            return content.length + (etag != null ? etag.length() : 0);
+        }
+    }
+
+    void cleanUp() {
+        caches.values().forEach(Cache::cleanUp);
+    }
+}
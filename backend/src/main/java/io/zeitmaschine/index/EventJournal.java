@@ -0,0 +1,186 @@
+package io.zeitmaschine.index;
+
+import static java.nio.file.StandardOpenOption.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Append-only journal of accepted webhook events in memory-mapped segment files of a fixed size. Events are forced to
+ * disk before the notification is acknowledged, whatever comes after the committed position is replayed on startup.
+ * Segments entirely before the committed position are deleted.
+ * <p>
+ * Record: length (int), crc32 of the payload (int), payload: removed (byte), key (utf-8). A length of 0 marks the end,
+ * segments are zero filled when mapped.
+ */
+class EventJournal {
+
+    private final static Logger LOG = LoggerFactory.getLogger(EventJournal.class.getName());
+
+    private final static String SEGMENT_PREFIX = "segment-";
+    private final static String SEGMENT_SUFFIX = ".log";
+    private final static int HEADER = 2 * Integer.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final MappedByteBuffer committed;
+
+    // guarded by this
+    private MappedByteBuffer segment;
+    private long segmentIndex;
+
+    EventJournal(Path directory, DataSize segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = (int) segmentSize.toBytes();
+        Files.createDirectories(directory);
+        try (FileChannel channel = FileChannel.open(directory.resolve("committed"), CREATE, READ, WRITE)) {
+            this.committed = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        }
+        // continue after the last record of the last segment
+        long last = segments().stream().mapToLong(Long::longValue).max().orElse(committed() / this.segmentSize);
+        open(last);
+        read(segment, last, 0, new ArrayList<>());
+    }
+
+    /**
+     * The events with their position in the journal, on disk once returned.
+     */
+    synchronized List<WebhookIngest.Event> append(List<WebhookIngest.Event> events) throws IOException {
+        List<WebhookIngest.Event> appended = new ArrayList<>(events.size());
+        for (WebhookIngest.Event event : events) {
+            byte[] key = event.key().getBytes(StandardCharsets.UTF_8);
+            int length = 1 + key.length;
+            if (HEADER + length > segmentSize) {
+                throw new IOException("Key '%s' exceeds the journal segment size.".formatted(event.key()));
+            }
+            if (segment.remaining() < HEADER + length) {
+                segment.force();
+                open(segmentIndex + 1);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(event.removed() ? 1 : 0);
+            crc.update(key);
+            segment.putInt(length)
+                    .putInt((int) crc.getValue())
+                    .put((byte) (event.removed() ? 1 : 0))
+                    .put(key);
+            appended.add(new WebhookIngest.Event(event.key(), event.removed(), position()));
+        }
+        segment.force();
+        return appended;
+    }
+
+    /**
+     * Everything after the committed position.
+     */
+    synchronized List<WebhookIngest.Event> replay() throws IOException {
+        long from = committed();
+        List<WebhookIngest.Event> events = new ArrayList<>();
+        for (long index : segments()) {
+            if (index < from / segmentSize) {
+                continue;
+            }
+            ByteBuffer buffer = index == segmentIndex ? segment.duplicate() : map(index);
+            read(buffer, index, index == from / segmentSize ? (int) (from % segmentSize) : 0, events);
+        }
+        return events;
+    }
+
+    /**
+     * Everything up to the position is done, the segments before aren't needed anymore.
+     */
+    synchronized void commit(long position) throws IOException {
+        if (position <= committed()) {
+            return;
+        }
+        committed.putLong(0, position);
+        committed.force();
+        for (long index : segments()) {
+            if (index < position / segmentSize && index != segmentIndex) {
+                Files.deleteIfExists(segment(index));
+            }
+        }
+    }
+
+    /**
+     * Forces what's mapped to disk, the journal isn't used afterwards.
+     */
+    synchronized void close() {
+        segment.force();
+        committed.force();
+    }
+
+    long committed() {
+        return committed.getLong(0);
+    }
+
+    // the segment indexes on disk, in order
+    List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private long position() {
+        return segmentIndex * segmentSize + segment.position();
+    }
+
+    private void open(long index) throws IOException {
+        segment = map(index);
+        segmentIndex = index;
+    }
+
+    private MappedByteBuffer map(long index) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment(index), CREATE, READ, WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private Path segment(long index) {
+        return directory.resolve(SEGMENT_PREFIX + "%019d".formatted(index) + SEGMENT_SUFFIX);
+    }
+
+    // reads up to the end marker or a torn record, leaves the buffer positioned after the last valid record
+    private void read(ByteBuffer buffer, long index, int offset, List<WebhookIngest.Event> events) {
+        long base = index * segmentSize;
+        buffer.position(offset);
+        while (buffer.remaining() >= HEADER) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                return;
+            }
+            byte removed = buffer.get();
+            byte[] key = new byte[length - 1];
+            buffer.get(key);
+            CRC32 crc = new CRC32();
+            crc.update(removed);
+            crc.update(key);
+            if ((int) crc.getValue() != checksum) {
+                LOG.warn("Torn record in the webhook journal, ignoring what follows.");
+                buffer.position(start);
+                return;
+            }
+            events.add(new WebhookIngest.Event(new String(key, StandardCharsets.UTF_8), removed == 1, base + buffer.position()));
+        }
+    }
+}
@@ -1,22 +1,33 @@
 package io.zeitmaschine.index;
 
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
 
-import io.zeitmaschine.s3.MetaDataProcessingRepository;
-import io.zeitmaschine.s3.S3Config;
-import io.zeitmaschine.s3.S3Repository;
+import io.zeitmaschine.catalog.Catalog;
+import io.zeitmaschine.catalog.CatalogEntry;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
  * Index endpoint for s3 to notify and trigger a manual reindexing.
@@ -26,49 +37,131 @@ import reactor.core.publisher.Flux;
 public class IndexEndpoint {
 
     private final static Logger LOG = LoggerFactory.getLogger(IndexEndpoint.class.getName());
+    // optional fields read as null
+    private final static String OBJECT_REMOVED = "s3:ObjectRemoved:";
+    private final static Configuration LENIENT = Configuration.defaultConfiguration().addOptions(Option.DEFAULT_PATH_LEAF_TO_NULL);
 
-    private final S3Repository repository;
     private final Indexer indexer;
-    private final String bucket;
+    private final Catalog catalog;
+    private final Jobs jobs;
+    private final WebhookIngest webhook;
 
     @Autowired
-    public IndexEndpoint(S3Repository repository, S3Config config, Indexer indexer) {
-        this.repository = MetaDataProcessingRepository.wrap(repository);
+    public IndexEndpoint(Indexer indexer, Catalog catalog, Jobs jobs, WebhookIngest webhook) {
         this.indexer = indexer;
-        this.bucket = config.getBucket();
+        this.catalog = catalog;
+        this.jobs = jobs;
+        this.webhook = webhook;
     }
 
-    // TODO: publish to stream
+    /**
+     * Notifications are queued for the single webhook pipeline, which indexes created and deletes removed objects.
+     * Refused with 503 while too many are pending.
+     */
     @PostMapping("/webhook")
     public ResponseEntity<Void> notify(@RequestBody String json) {
 
+        List<String> names = JsonPath.read(json, "$.Records[*].eventName");
         List<String> keys = JsonPath.read(json, "$.Records[*].s3.object.key");
 
-        Flux.fromIterable(keys)
-                .flatMap(key -> repository.get(bucket, key))
-                .subscribe(entry -> indexer.index(entry));
-        return ResponseEntity.ok().build();
+        List<WebhookIngest.Event> events = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            // keys are url encoded in notifications
+            String key = URLDecoder.decode(keys.get(i), StandardCharsets.UTF_8);
+            events.add(new WebhookIngest.Event(key, names.get(i).startsWith(OBJECT_REMOVED)));
+        }
+
+        return webhook.submit(events) ? ResponseEntity.ok().build() : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
     }
 
+    /**
+     * Reindexing a prefix takes a while, it runs as a background job. The job id is returned right away, progress is
+     * reported by {@code /index/jobs/{id}}. Objects already cataloged with the same ETag are skipped, pass
+     * {@code "full": true} to index everything.
+     */
     @PostMapping("/prefix")
-    public ResponseEntity<Void> prefix(@RequestBody String json) {
+    public ResponseEntity<Map<String, String>> prefix(@RequestBody String json) {
         String prefix = JsonPath.read(json, "$.prefix");
-        LOG.info("Indexing objects with prefix '{}'.", prefix);
-        repository.get(prefix)
-                .subscribe(entry -> indexer.index(entry));
+        boolean full = Boolean.TRUE.equals(JsonPath.using(LENIENT).parse(json).read("$.full", Boolean.class));
+        String id = jobs.start(prefix, full);
+        return ResponseEntity.accepted()
+                .location(URI.create("/index/jobs/" + id))
+                .body(Map.of("id", id));
+    }
+
+    @GetMapping("/jobs")
+    public List<Reindex.Status> jobs() {
+        return jobs.statuses();
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<Reindex.Status> job(@PathVariable String id) {
+        return ResponseEntity.of(jobs.get(id).map(Reindex::status));
+    }
+
+    @PostMapping("/jobs/{id}/pause")
+    public ResponseEntity<Reindex.Status> pause(@PathVariable String id) {
+        return control(id, Reindex::pause);
+    }
+
+    @PostMapping("/jobs/{id}/resume")
+    public ResponseEntity<Reindex.Status> resume(@PathVariable String id) {
+        return control(id, Reindex::resume);
+    }
+
+    @PostMapping("/jobs/{id}/cancel")
+    public ResponseEntity<Reindex.Status> cancel(@PathVariable String id) {
+        return control(id, Reindex::cancel);
+    }
+
+    // conflict if the job isn't in a state to do so
+    private ResponseEntity<Reindex.Status> control(String id, Predicate<Reindex> action) {
+        return jobs.get(id)
+                .map(job -> action.test(job)
+                        ? ResponseEntity.ok(job.status())
+                        : ResponseEntity.status(HttpStatus.CONFLICT).body(job.status()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Rebuilds the index from the catalog, e.g. after a wipe, without listing or touching the bucket.
+     */
+    @PostMapping("/catalog")
+    public ResponseEntity<Void> catalog() {
+        LOG.info("Indexing cataloged objects.");
+        background("cataloged objects", indexer.index(catalog.entries().map(CatalogEntry::toS3Entry))
+                .doOnComplete(jobs::rebuilt));
 
         return ResponseEntity.ok().build();
     }
 
+    private void background(String what, Flux<IndexResult> results) {
+        results.filter(result -> !result.successful())
+                .count()
+                .subscribe(
+                        failed -> LOG.info("Indexing {} done, {} failed.", what, failed),
+                        e -> LOG.error("Indexing {} aborted.", what, e));
+    }
+
     @PostMapping("/init")
-    public ResponseEntity<Void> index() {
-        indexer.initIndex();
-        return ResponseEntity.ok().build();
+    public Mono<ResponseEntity<Void>> index() {
+        return indexer.initIndex()
+                .then(Mono.just(ResponseEntity.ok().build()));
     }
 
+    @PostMapping("/dedup")
+    public Mono<ResponseEntity<Map<String, Long>>> dedup() {
+        return indexer.dedup()
+                .map(deleted -> ResponseEntity.ok(Map.of("deleted", deleted)));
+    }
+
+    /**
+     * The catalog is kept for {@code /index/catalog}, until then prefix jobs ignore it and run in full.
+     */
     @PostMapping("/wipe")
-    public ResponseEntity<Void> wipe() {
-        indexer.wipe();
-        return ResponseEntity.ok().build();
+    public Mono<ResponseEntity<Void>> wipe() {
+        return indexer.wipe()
+                .then(Mono.fromRunnable(jobs::wiped))
+                .then(Mono.just(ResponseEntity.ok().build()));
     }
 }
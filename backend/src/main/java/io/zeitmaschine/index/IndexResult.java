@@ -0,0 +1,19 @@
+package io.zeitmaschine.index;
+
+/**
+ * Outcome of indexing a single image, as reported per item by the elastic _bulk response.
+ */
+public record IndexResult(String key, int status, String error) {
+
+    public boolean successful() {
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * Too many requests and server side errors might succeed on a later attempt, everything else (mapping errors
+     * etc.) won't.
+     */
+    boolean retryable() {
+        return status == 429 || status >= 500;
+    }
+}
@@ -1,88 +1,443 @@
 package io.zeitmaschine.index;
 
-import java.net.URI;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.ReadContext;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.zeitmaschine.metrics.CallMetrics;
 import io.zeitmaschine.s3.S3Entry;
+import io.zeitmaschine.tracing.Spans;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Service
 public class Indexer {
 
     private final static Logger LOG = LoggerFactory.getLogger(Indexer.class.getName());
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String INDEX_ACTION = "{\"index\":{\"_id\":\"%s\"}}\n";
+    private static final byte[] NEWLINE = "\n".getBytes(StandardCharsets.UTF_8);
+    // Keep the response small, we only care about the outcome per item.
+    private static final String BULK_FILTER_PATH = "errors,items.*.status,items.*.error.type,items.*.error.reason";
+    // names indexed more than once, collapsed per page
+    private static final int DEDUP_PAGE_SIZE = 500;
+
     private final String index;
-    private final String indexUrl;
-    private final String indexesUrl;
-    private final String resourceUrl;
+    private final String indexPath;
+    private final String resourcePath;
+    private final String bulkPath;
+    private final String searchPath;
+    private final String deleteByQueryPath;
+    private final IndexerConfig.Bulk bulk;
+    private final int concurrency;
     private final WebClient webClient;
-
-    private RestTemplate restTemplate = new RestTemplate();
+    private final ObjectMapper objectMapper;
+    // elastic.calls, elastic.bytes and elastic.errors by operation and index
+    private final CallMetrics metrics;
 
     @Autowired
-    public Indexer(IndexerConfig config) {
+    public Indexer(IndexerConfig config, MeterRegistry registry, Spans spans) {
+        this(config, WebClient.builder(), registry, spans);
+    }
+
+    // Used for test, allows stubbing the exchange with elastic.
+    Indexer(IndexerConfig config, WebClient.Builder webClientBuilder, MeterRegistry registry, Spans spans) {
+        this(config, webClientBuilder, new ObjectMapper(), registry, spans);
+    }
+
+    // Used for test, allows failing the serialization.
+    Indexer(IndexerConfig config, WebClient.Builder webClientBuilder, ObjectMapper objectMapper, MeterRegistry registry, Spans spans) {
+        this.objectMapper = objectMapper;
         this.index = config.getIndex();
-        this.indexesUrl = String.format("%s/_all", config.getHost());
-        this.indexUrl = String.format("%s/%s", config.getHost(), config.getIndex());
-        this.resourceUrl = String.format("%s/%s", indexUrl, config.getResource());
+        this.indexPath = String.format("/%s", config.getIndex());
+        this.resourcePath = String.format("%s/%s", indexPath, config.getResource());
+        this.bulkPath = String.format("%s/_bulk", resourcePath);
+        this.searchPath = String.format("%s/_search", indexPath);
+        this.deleteByQueryPath = String.format("%s/_delete_by_query", indexPath);
+        this.bulk = config.getBulk();
+        this.concurrency = config.getConcurrency();
 
-        this.webClient = WebClient
-                .builder()
+        this.webClient = webClientBuilder
                 .baseUrl(config.getHost())
                 .build();
-        LOG.info("elastic: {}", indexesUrl);
+        this.metrics = new CallMetrics("elastic", registry, spans);
+        LOG.info("elastic: {}", config.getHost());
     }
 
-    public void initIndex() {
-        LOG.info("Checking elasticsearch index: '{}'", indexUrl);
-        ResponseEntity<String> existing = restTemplate.getForEntity(indexesUrl, String.class);
-        ReadContext document = JsonPath.parse(existing.getBody());
+    private Tags tags(String operation) {
+        return Tags.of("operation", operation, "index", index);
+    }
 
-        Map<String, String> zm = document.read("$");
+    public Mono<Void> initIndex() {
+        LOG.info("Checking elasticsearch index: '{}'", indexPath);
+        return metrics.time(tags("exists"), webClient.head()
+                .uri(indexPath)
+                .exchangeToMono(response -> Mono.just(response.statusCode())))
+                .flatMap(status -> {
+                    boolean exists = status.is2xxSuccessful();
+                    LOG.info("Index '{}' existing: {}", index, exists);
+                    if (exists) {
+                        return Mono.empty();
+                    }
+                    LOG.info("Creating index '{}'.", indexPath);
+                    return metrics.time(tags("create"), webClient.put()
+                            .uri(indexPath)
+                            .retrieve()
+                            .toBodilessEntity())
+                            .then();
+                });
+    }
 
-        boolean exists = zm.containsKey(index);
-        LOG.info("Index '{}' existing: {}", index, exists);
-        if (!exists) {
-            LOG.info("Creating index '{}'.", indexUrl);
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
+    /**
+     * The document id is derived from the object key, indexing an object again replaces its document instead of
+     * adding another one.
+     * <p>
+     * Keys are hashed since S3 keys may be longer than what elastic allows for an id and contain slashes.
+     */
+    public static String documentId(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not supported.", e);
+        }
+    }
+
+    public Mono<IndexResult> index(S3Entry entry) {
+        return metrics.time(tags("index"), webClient.put()
+                .uri(resourcePath + "/{id}", documentId(entry.key()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(toImage(entry))
+                .retrieve()
+                .bodyToMono(String.class))
+                .map(response -> {
+                    String result = JsonPath.read(response, "$.result");
+                    LOG.info("Image '{}' successfully indexed: {}", entry.key(), result);
+                    return new IndexResult(entry.key(), "created".equals(result) ? 201 : 200, null);
+                })
+                .onErrorResume(WebClientResponseException.class, e -> {
+                    LOG.error("Failed to index image '{}'.", entry.key(), e);
+                    return Mono.just(new IndexResult(entry.key(), e.getRawStatusCode(), e.getResponseBodyAsString()));
+                });
+    }
 
-            restTemplate.put(indexUrl, null);
+    /**
+     * Indexes the entries in batches over the elastic _bulk API. A batch is flushed once it reaches the configured
+     * number of actions or payload size, whichever comes first, at the flush interval or when the entries complete.
+     * Entries are only pulled as elastic takes the batches.
+     * <p>
+     * Items failing with a retryable status are resubmitted on their own, the result for every entry is emitted
+     * once it is final. At most {@link IndexerConfig#getConcurrency()} bulk requests are in flight.
+     */
+    public Flux<IndexResult> index(Flux<S3Entry> entries) {
+        // an entry failing to serialize still gets its result, it's not sent
+        Flux<BulkItem> items = entries
+                .map(entry -> {
+                    try {
+                        return new BulkItem(entry.key(), objectMapper.writeValueAsBytes(toImage(entry)));
+                    } catch (JsonProcessingException e) {
+                        LOG.error("Failed to serialize image '{}'.", entry.key(), e);
+                        return BulkItem.unserializable(entry.key());
+                    }
+                });
+        // bufferTimeout ignores demand and overflows if the timer fires without any, see reactor-core#1099. Ticks
+        // are merged in instead and cut a demand driven buffer, the ones nobody asked for are dropped.
+        Flux<BulkItem> flushes = Flux.interval(bulk.getFlushInterval())
+                .onBackpressureDrop()
+                .map(tick -> BulkItem.FLUSH);
+        return Flux.defer(() -> {
+                    AtomicInteger buffered = new AtomicInteger();
+                    // no prefetch, the buffer pulls the items
+                    return Flux.merge(1, items.concatWith(Mono.just(BulkItem.END)), flushes)
+                            .takeWhile(item -> item != BulkItem.END)
+                            .bufferUntil(item -> {
+                                if (item == BulkItem.FLUSH || buffered.incrementAndGet() == bulk.getActions()) {
+                                    buffered.set(0);
+                                    return true;
+                                }
+                                return false;
+                            });
+                })
+                .map(batch -> batch.stream().filter(item -> item != BulkItem.FLUSH).toList())
+                .filter(batch -> !batch.isEmpty())
+                // one batch ahead of the requests in flight, the default prefetch would pull 32 batches of the listing
+                .concatMapIterable(this::partition, 1)
+                .flatMap(batch -> batch.get(0).unserializable()
+                        ? Flux.fromIterable(batch).map(item -> new IndexResult(item.key(), 400, "Failed to serialize the image."))
+                        : bulk(batch, 0), concurrency);
+    }
+
+    /**
+     * Splits a batch further in case its payload exceeds the configured bulk size. Items failing to serialize are
+     * split off into a batch of their own.
+     */
+    List<List<BulkItem>> partition(List<BulkItem> items) {
+        long maxBytes = bulk.getSize().toBytes();
+        List<List<BulkItem>> batches = new ArrayList<>();
+        List<BulkItem> unserializable = items.stream().filter(BulkItem::unserializable).toList();
+        if (!unserializable.isEmpty()) {
+            batches.add(unserializable);
+        }
+        List<BulkItem> batch = new ArrayList<>();
+        long batchBytes = 0;
+        for (BulkItem item : items) {
+            if (item.unserializable()) {
+                continue;
+            }
+            if (!batch.isEmpty() && batchBytes + item.size() > maxBytes) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(item);
+            batchBytes += item.size();
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
         }
+        return batches;
+    }
 
+    private Flux<IndexResult> bulk(List<BulkItem> items, int attempt) {
+        Tags tags = tags("bulk");
+        byte[] payload = payload(items);
+        return metrics.time(tags, webClient.post()
+                .uri(uriBuilder -> uriBuilder
+                        .path(bulkPath)
+                        .queryParam("filter_path", BULK_FILTER_PATH)
+                        .build())
+                .contentType(NDJSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(payload)
+                .retrieve()
+                .bodyToMono(String.class))
+                .doOnSubscribe(subscription -> metrics.sent(tags, payload.length))
+                .map(response -> results(items, response))
+                // the whole request failed, e.g. elastic not reachable or rejecting the request.
+                .onErrorResume(e -> {
+                    LOG.error("Bulk request with {} items failed.", items.size(), e);
+                    return Mono.just(items.stream()
+                            .map(item -> new IndexResult(item.key(), 503, e.getMessage()))
+                            .toList());
+                })
+                .flatMapMany(results -> {
+                    List<BulkItem> retry = new ArrayList<>();
+                    List<IndexResult> done = new ArrayList<>();
+                    for (int i = 0; i < results.size(); i++) {
+                        IndexResult result = results.get(i);
+                        if (!result.successful() && result.retryable() && attempt < bulk.getRetries()) {
+                            retry.add(items.get(i));
+                        } else {
+                            if (!result.successful()) {
+                                LOG.error("Failed to index image '{}': {} {}", result.key(), result.status(), result.error());
+                            }
+                            done.add(result);
+                        }
+                    }
+                    LOG.info("Bulk indexed {} items, {} to be retried.", done.size(), retry.size());
+                    if (retry.isEmpty()) {
+                        return Flux.fromIterable(done);
+                    }
+                    return Flux.concat(
+                            Flux.fromIterable(done),
+                            Mono.delay(bulk.getRetryBackoff().multipliedBy(attempt + 1))
+                                    .thenMany(Flux.defer(() -> bulk(retry, attempt + 1))));
+                });
     }
 
-    public void index(S3Entry entry) {
-        try {
-            Image payload = Image.from(entry.key())
-                    .createDate(entry.created())
-                    .location(entry.location())
-                    .build();
-            HttpEntity<Image> request = new HttpEntity<>(payload);
-            URI uri = restTemplate.postForLocation(resourceUrl, request);
-
-            LOG.info("Image '{}' successfully indexed: {}", entry.key(), uri.toString());
-        } catch (RestClientException e) {
-            LOG.error("Failed to index image '{}'.", entry.key(), e);
+    private byte[] payload(List<BulkItem> items) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        for (BulkItem item : items) {
+            payload.writeBytes(item.action());
+            payload.writeBytes(item.document());
+            payload.writeBytes(NEWLINE);
+        }
+        return payload.toByteArray();
+    }
+
+    /**
+     * Maps the items of the bulk response to our results. Elastic reports the items in the order of the request.
+     */
+    private List<IndexResult> results(List<BulkItem> items, String response) {
+        ReadContext document = JsonPath.parse(response);
+        Boolean errors = document.read("$.errors");
+        List<Map<String, Object>> responseItems = Boolean.TRUE.equals(errors) ? document.read("$.items[*].*") : List.of();
+
+        List<IndexResult> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            String key = items.get(i).key();
+            if (i < responseItems.size()) {
+                Map<String, Object> item = responseItems.get(i);
+                int status = ((Number) item.get("status")).intValue();
+                Object error = item.get("error");
+                results.add(new IndexResult(key, status, error != null ? error.toString() : null));
+            } else {
+                results.add(new IndexResult(key, 200, null));
+            }
+        }
+        return results;
+    }
+
+    private static Image toImage(S3Entry entry) {
+        return Image.from(entry.key())
+                .createDate(entry.created())
+                .location(entry.location())
+                .build();
+    }
+
+    /**
+     * Runs a query against the index, the response as elastic returns it.
+     */
+    public Mono<String> search(Map<String, Object> query) {
+        return metrics.time(tags("search"), webClient.post()
+                .uri(searchPath)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(query)
+                .retrieve()
+                .bodyToMono(String.class));
+    }
+
+    /**
+     * Collapses documents indexed more than once for the same object, e.g. from before document ids were derived
+     * from the key. One document per name is kept under its derived id, all others are deleted.
+     *
+     * @return the number of deleted documents.
+     */
+    public Mono<Long> dedup() {
+        return dedupPage()
+                .expand(deleted -> deleted > 0 ? dedupPage() : Mono.empty())
+                .reduce(0L, Long::sum)
+                .doOnNext(deleted -> LOG.info("Deleted {} duplicate documents from index '{}'.", deleted, index));
+    }
+
+    private Mono<Long> dedupPage() {
+        Map<String, Object> latest = Map.of("top_hits", Map.of(
+                "size", 1,
+                "sort", List.of(Map.of("created", Map.of("order", "desc", "missing", "_last", "unmapped_type", "date")))));
+        Map<String, Object> query = Map.of(
+                "size", 0,
+                "aggs", Map.of("duplicates", Map.of(
+                        "terms", Map.of("field", "name.keyword", "min_doc_count", 2, "size", DEDUP_PAGE_SIZE),
+                        "aggs", Map.of("latest", latest))));
+
+        return metrics.time(tags("search"), webClient.post()
+                .uri(searchPath)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(query)
+                .retrieve()
+                .bodyToMono(String.class))
+                .map(this::duplicates)
+                .filter(duplicates -> !duplicates.isEmpty())
+                .flatMap(duplicates -> bulk(duplicates, 0)
+                        // never delete the duplicates of a name whose document could not be stored under its id
+                        .filter(IndexResult::successful)
+                        .map(IndexResult::key)
+                        .collectList())
+                .flatMap(names -> names.isEmpty() ? Mono.just(0L) : deleteDuplicates(names))
+                .defaultIfEmpty(0L);
+    }
+
+    private List<BulkItem> duplicates(String response) {
+        List<Map<String, Object>> buckets = JsonPath.read(response, "$.aggregations.duplicates.buckets");
+        List<BulkItem> duplicates = new ArrayList<>(buckets.size());
+        for (Map<String, Object> bucket : buckets) {
+            String name = (String) bucket.get("key");
+            Object source = JsonPath.read(bucket, "$.latest.hits.hits[0]._source");
+            try {
+                duplicates.add(new BulkItem(name, objectMapper.writeValueAsBytes(source)));
+            } catch (JsonProcessingException e) {
+                LOG.error("Failed to serialize image '{}'.", name, e);
+            }
         }
+        return duplicates;
     }
 
-    public void wipe() {
-        LOG.info("Deleting index '{}'.", indexUrl);
-        RestTemplate restTemplate = new RestTemplate();
-        restTemplate.delete(indexUrl);
+    private Mono<Long> deleteDuplicates(List<String> names) {
+        List<String> ids = names.stream().map(Indexer::documentId).toList();
+        Map<String, Object> query = Map.of("query", Map.of("bool", Map.of(
+                "filter", List.of(Map.of("terms", Map.of("name.keyword", names))),
+                "must_not", List.of(Map.of("ids", Map.of("values", ids))))));
+
+        return metrics.time(tags("delete-by-query"), webClient.post()
+                .uri(uriBuilder -> uriBuilder
+                        .path(deleteByQueryPath)
+                        // the next page must not see the deleted documents anymore
+                        .queryParam("refresh", true)
+                        .build())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(query)
+                .retrieve()
+                .bodyToMono(String.class))
+                .map(response -> JsonPath.<Number>read(response, "$.deleted").longValue());
+    }
+
+    /**
+     * Deletes the documents of the given keys, by name to catch the ones indexed under another id as well.
+     */
+    public Mono<Long> delete(List<String> keys) {
+        Map<String, Object> query = Map.of("query", Map.of("terms", Map.of("name.keyword", keys)));
+
+        return metrics.time(tags("delete-by-query"), webClient.post()
+                .uri(deleteByQueryPath)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(query)
+                .retrieve()
+                .bodyToMono(String.class))
+                .map(response -> JsonPath.<Number>read(response, "$.deleted").longValue());
+    }
+
+    public Mono<Void> wipe() {
+        LOG.info("Deleting index '{}'.", indexPath);
+        return metrics.time(tags("delete-index"), webClient.delete()
+                .uri(indexPath)
+                .retrieve()
+                .toBodilessEntity())
+                .then();
+    }
+
+    // the action is computed once, its id is a hash of the key
+    record BulkItem(String key, byte[] action, byte[] document) {
+
+        // markers within the items, never sent
+        static final BulkItem FLUSH = new BulkItem(null, new byte[0], new byte[0]);
+        static final BulkItem END = new BulkItem(null, new byte[0], new byte[0]);
+
+        BulkItem(String key, byte[] document) {
+            this(key, INDEX_ACTION.formatted(documentId(key)).getBytes(StandardCharsets.UTF_8), document);
+        }
+
+        static BulkItem unserializable(String key) {
+            return new BulkItem(key, null, null);
+        }
+
+        boolean unserializable() {
+            return document == null;
+        }
+
+        long size() {
+            return action().length + document.length + NEWLINE.length;
+        }
     }
 }
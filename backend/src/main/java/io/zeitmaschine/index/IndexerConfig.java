@@ -1,7 +1,10 @@
 package io.zeitmaschine.index;
 
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 @Component
 @ConfigurationProperties(prefix = "elasticsearch")
@@ -10,6 +13,9 @@ public class IndexerConfig {
     private String host;
     private String index;
     private String resource;
+    // max. requests in flight against elastic
+    private int concurrency = 2;
+    private Bulk bulk = new Bulk();
 
     public String getHost() {
         return host;
@@ -35,4 +41,72 @@ public class IndexerConfig {
         this.resource = resource;
     }
 
-}
\ No newline at end of file
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public Bulk getBulk() {
+        return bulk;
+    }
+
+    public void setBulk(Bulk bulk) {
+        this.bulk = bulk;
+    }
+
+    // needs to be static, PITA exception otherwise
+    public static class Bulk {
+
+        // a batch is flushed to _bulk as soon as one of these limits is reached, or the entries complete
+        private int actions = 500;
+        private DataSize size = DataSize.ofMegabytes(5);
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        // only items failing with 429 or 5xx are retried
+        private int retries = 3;
+        private Duration retryBackoff = Duration.ofMillis(500);
+
+        public int getActions() {
+            return actions;
+        }
+
+        public void setActions(int actions) {
+            this.actions = actions;
+        }
+
+        public DataSize getSize() {
+            return size;
+        }
+
+        public void setSize(DataSize size) {
+            this.size = size;
+        }
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+
+        public void setRetries(int retries) {
+            this.retries = retries;
+        }
+
+        public Duration getRetryBackoff() {
+            return retryBackoff;
+        }
+
+        public void setRetryBackoff(Duration retryBackoff) {
+            this.retryBackoff = retryBackoff;
+        }
+    }
+}
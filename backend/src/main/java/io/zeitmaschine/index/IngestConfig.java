@@ -0,0 +1,83 @@
+package io.zeitmaschine.index;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.zeitmaschine.catalog.Catalog;
+import io.zeitmaschine.s3.MetaDataProcessingRepository;
+import io.zeitmaschine.s3.MetaDataStore;
+import io.zeitmaschine.s3.S3Config;
+import io.zeitmaschine.s3.S3Entry;
+import io.zeitmaschine.s3.S3Repository;
+import io.zeitmaschine.tracing.Spans;
+import reactor.core.publisher.Flux;
+
+/**
+ * Reindex jobs and the webhook pipeline, sharing one metadata processing repository. It isn't a bean itself, it
+ * would compete with the minio repository for {@link S3Repository}, it's disposed with this configuration.
+ */
+@Configuration
+class IngestConfig implements DisposableBean {
+
+    private final S3Repository repository;
+    private final MetaDataProcessingRepository processing;
+    private final Indexer indexer;
+    private final Catalog catalog;
+    private final String bucket;
+
+    @Autowired
+    IngestConfig(S3Repository repository, S3Config config, MetaDataStore store, Indexer indexer, Catalog catalog, MeterRegistry registry, Spans spans) {
+        this.repository = repository;
+        this.processing = MetaDataProcessingRepository.wrap(repository, config.getMetadata(), store, registry, spans);
+        this.indexer = indexer;
+        this.catalog = catalog;
+        this.bucket = config.getBucket();
+    }
+
+    @Bean
+    Jobs jobs(JobsConfig config) {
+        return new Jobs(repository, processing, this::index, catalog, config);
+    }
+
+    @Bean
+    WebhookIngest webhookIngest(JobsConfig config, Spans spans) {
+        return new WebhookIngest(processing, bucket, this::index, indexer::delete, catalog, config.getWebhook(), journal(config.getWebhook()), spans);
+    }
+
+    @Override
+    public void destroy() {
+        processing.destroy();
+    }
+
+    private static EventJournal journal(JobsConfig.Webhook config) {
+        if (config.getJournal() == null) {
+            return null;
+        }
+        try {
+            return new EventJournal(Path.of(config.getJournal()), config.getSegmentSize());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the webhook journal in '%s'.".formatted(config.getJournal()), e);
+        }
+    }
+
+    // the catalog only learns about objects that actually made it into the index
+    private Flux<IndexResult> index(Flux<S3Entry> entries) {
+        Map<String, S3Entry> pending = new ConcurrentHashMap<>();
+        return indexer.index(entries.doOnNext(entry -> pending.put(entry.key(), entry)))
+                .doOnNext(result -> {
+                    S3Entry entry = pending.remove(result.key());
+                    if (entry != null && result.successful()) {
+                        catalog.update(entry);
+                    }
+                });
+    }
+}
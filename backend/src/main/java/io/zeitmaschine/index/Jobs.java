@@ -0,0 +1,124 @@
+package io.zeitmaschine.index;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.zeitmaschine.catalog.Catalog;
+import io.zeitmaschine.s3.MetaDataProcessingRepository;
+import io.zeitmaschine.s3.S3Entry;
+import io.zeitmaschine.s3.S3Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Reindex jobs by id, restored from their checkpoints on startup. All jobs share the same rate limits, so together
+ * they leave enough of s3 and elastic to serving images.
+ */
+class Jobs {
+
+    private final static Logger LOG = LoggerFactory.getLogger(Jobs.class.getName());
+    // set by a wipe, the catalog lists objects no longer in the index
+    final static String WIPED = "index-wiped";
+
+    private final Map<String, Reindex> jobs = new ConcurrentHashMap<>();
+    private final S3Repository listing;
+    private final MetaDataProcessingRepository repository;
+    private final Function<Flux<S3Entry>, Flux<IndexResult>> indexer;
+    private final TokenBucket s3Limit;
+    private final Catalog catalog;
+    private final int history;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    Jobs(S3Repository listing, MetaDataProcessingRepository repository, Function<Flux<S3Entry>, Flux<IndexResult>> indexer, Catalog catalog, JobsConfig config) {
+        TokenBucket elasticLimit = new TokenBucket(config.getElastic());
+        this.listing = listing;
+        this.repository = repository;
+        this.indexer = entries -> indexer.apply(elasticLimit.limit(entries));
+        this.s3Limit = new TokenBucket(config.getS3());
+        this.catalog = catalog;
+        this.history = config.getHistory();
+
+        catalog.checkpoints(Reindex.CHECKPOINT).values().stream()
+                .map(this::read)
+                .flatMap(Optional::stream)
+                // still running means the process died, can be resumed from the checkpoint
+                .map(status -> status.state() == Reindex.State.RUNNING ? status.state(Reindex.State.PAUSED) : status)
+                .forEach(status -> {
+                    if (status.state() == Reindex.State.PAUSED) {
+                        LOG.info("Reindexing prefix '{}' is paused after '{}', resume job {}.", status.prefix(), status.startAfter(), status.id());
+                    }
+                    jobs.put(status.id(), reindex(status.id(), status));
+                });
+    }
+
+    String start(String prefix, boolean full) {
+        String id = UUID.randomUUID().toString();
+        Reindex reindex = reindex(id, null);
+        // before the new one is added, a quick job would otherwise push out a previous one right away
+        prune();
+        jobs.put(id, reindex);
+        boolean wiped = catalog.checkpoint(WIPED).isPresent();
+        if (wiped && !full) {
+            LOG.info("Index was wiped, reindexing prefix '{}' in full.", prefix);
+        }
+        reindex.start(prefix, full || wiped);
+        return id;
+    }
+
+    /**
+     * Prefix jobs run in full after a wipe, until the index is rebuilt from the catalog.
+     */
+    void wiped() {
+        catalog.checkpoint(WIPED, String.valueOf(System.currentTimeMillis()));
+    }
+
+    void rebuilt() {
+        catalog.removeCheckpoint(WIPED);
+    }
+
+    Optional<Reindex> get(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    // latest first
+    List<Reindex.Status> statuses() {
+        return jobs.values().stream()
+                .map(Reindex::status)
+                .sorted(Comparator.comparingLong(Reindex.Status::started).reversed())
+                .toList();
+    }
+
+    // only the latest finished jobs are kept
+    private void prune() {
+        statuses().stream()
+                .filter(Reindex.Status::finished)
+                .skip(history)
+                .forEach(status -> {
+                    jobs.remove(status.id());
+                    catalog.removeCheckpoint(Reindex.CHECKPOINT + status.id());
+                });
+    }
+
+    private Reindex reindex(String id, Reindex.Status status) {
+        return new Reindex(id, status, listing, repository, indexer, s3Limit, catalog, objectMapper);
+    }
+
+    private Optional<Reindex.Status> read(String json) {
+        try {
+            return Optional.of(objectMapper.readValue(json, Reindex.Status.class));
+        } catch (JsonProcessingException e) {
+            LOG.error("Failed to read reindex checkpoint, ignoring it.", e);
+            return Optional.empty();
+        }
+    }
+}
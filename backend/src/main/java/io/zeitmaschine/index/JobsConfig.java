@@ -0,0 +1,167 @@
+package io.zeitmaschine.index;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+@Component
+@ConfigurationProperties(prefix = "jobs")
+public class JobsConfig {
+
+    // finished jobs kept for their status
+    private int history = 20;
+    // objects read from s3 by all jobs together, opt-in to leave room for browsing while reindexing
+    private RateLimit s3 = new RateLimit();
+    // documents written to elastic by all jobs together, opt-in as well
+    private RateLimit elastic = new RateLimit();
+    private Webhook webhook = new Webhook();
+
+    public int getHistory() {
+        return history;
+    }
+
+    public void setHistory(int history) {
+        this.history = history;
+    }
+
+    public RateLimit getS3() {
+        return s3;
+    }
+
+    public void setS3(RateLimit s3) {
+        this.s3 = s3;
+    }
+
+    public RateLimit getElastic() {
+        return elastic;
+    }
+
+    public void setElastic(RateLimit elastic) {
+        this.elastic = elastic;
+    }
+
+    public Webhook getWebhook() {
+        return webhook;
+    }
+
+    public void setWebhook(Webhook webhook) {
+        this.webhook = webhook;
+    }
+
+    // needs to be static, PITA exception otherwise
+    public static class RateLimit {
+        // per second, unlimited if 0
+        private double rate;
+        // tokens available at once, refilled at the rate
+        private int burst = 1;
+
+        public double getRate() {
+            return rate;
+        }
+
+        public void setRate(double rate) {
+            this.rate = rate;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+    }
+
+    public static class Webhook {
+        // events are collected for the window, a key's last event within it wins
+        private Duration window = Duration.ofSeconds(1);
+        // at most this many events processed together
+        private int batch = 500;
+        // events not yet processed, further notifications are refused
+        private int capacity = 10000;
+        // objects fetched and processed at once
+        private int concurrency = 8;
+        // a failed batch is retried, waiting from the backoff up to the max in between, then its failed objects are
+        // given up on
+        private long retries = 10;
+        private Duration retryBackoff = Duration.ofSeconds(1);
+        private Duration maxBackoff = Duration.ofMinutes(5);
+        // directory journaling accepted events until processed, only kept in memory if not set
+        private String journal;
+        private DataSize segmentSize = DataSize.ofMegabytes(4);
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public int getBatch() {
+            return batch;
+        }
+
+        public void setBatch(int batch) {
+            this.batch = batch;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public long getRetries() {
+            return retries;
+        }
+
+        public void setRetries(long retries) {
+            this.retries = retries;
+        }
+
+        public Duration getRetryBackoff() {
+            return retryBackoff;
+        }
+
+        public void setRetryBackoff(Duration retryBackoff) {
+            this.retryBackoff = retryBackoff;
+        }
+
+        public Duration getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+
+        public String getJournal() {
+            return journal;
+        }
+
+        public void setJournal(String journal) {
+            this.journal = journal;
+        }
+
+        public DataSize getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(DataSize segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+    }
+}
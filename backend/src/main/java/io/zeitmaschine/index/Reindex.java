@@ -0,0 +1,223 @@
+package io.zeitmaschine.index;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.zeitmaschine.catalog.Catalog;
+import io.zeitmaschine.s3.MetaDataProcessingRepository;
+import io.zeitmaschine.s3.S3Entry;
+import io.zeitmaschine.s3.S3Repository;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+/**
+ * Job reindexing a prefix in listing order, it checkpoints the key up to which every object is done. A paused or
+ * interrupted reindex continues listing after that key instead of starting from scratch.
+ */
+class Reindex {
+
+    private final static Logger LOG = LoggerFactory.getLogger(Reindex.class.getName());
+
+    final static String CHECKPOINT = "reindex-";
+    // the checkpoint is persisted at most once per interval while running
+    private final static long SAVE_INTERVAL = 1000;
+
+    enum State {RUNNING, PAUSED, CANCELLED, DONE, FAILED}
+
+    // rate in objects per second, elapsed in ms
+    record Status(String id, State state, String prefix, boolean full, String startAfter, long indexed, long failed, long skipped, long started, long elapsed, double rate) {
+
+        Status state(State state) {
+            return new Status(id, state, prefix, full, startAfter, indexed, failed, skipped, started, elapsed, rate);
+        }
+
+        boolean finished() {
+            return state == State.DONE || state == State.CANCELLED || state == State.FAILED;
+        }
+    }
+
+    private final String id;
+    private final S3Repository listing;
+    private final MetaDataProcessingRepository repository;
+    private final Function<Flux<S3Entry>, Flux<IndexResult>> indexer;
+    private final TokenBucket s3Limit;
+    private final Catalog catalog;
+    private final ObjectMapper objectMapper;
+
+    // guarded by this
+    private Status status;
+    private Progress progress;
+    private Disposable subscription;
+    private long saved;
+
+    Reindex(String id, Status status, S3Repository listing, MetaDataProcessingRepository repository,
+            Function<Flux<S3Entry>, Flux<IndexResult>> indexer, TokenBucket s3Limit, Catalog catalog, ObjectMapper objectMapper) {
+        this.id = id;
+        this.status = status;
+        this.listing = listing;
+        this.repository = repository;
+        this.indexer = indexer;
+        this.s3Limit = s3Limit;
+        this.catalog = catalog;
+        this.objectMapper = objectMapper;
+    }
+
+    synchronized void start(String prefix, boolean full) {
+        run(new Status(id, State.RUNNING, prefix, full, null, 0, 0, 0, System.currentTimeMillis(), 0, 0));
+    }
+
+    synchronized boolean resume() {
+        if (status == null || status.state() != State.PAUSED) {
+            return false;
+        }
+        run(status.state(State.RUNNING));
+        return true;
+    }
+
+    synchronized boolean pause() {
+        if (!running()) {
+            return false;
+        }
+        stop(State.PAUSED);
+        return true;
+    }
+
+    synchronized boolean cancel() {
+        if (running()) {
+            stop(State.CANCELLED);
+            return true;
+        }
+        if (status != null && status.state() == State.PAUSED) {
+            save(status.state(State.CANCELLED));
+            return true;
+        }
+        return false;
+    }
+
+    synchronized Status status() {
+        return running() ? progress.snapshot(State.RUNNING) : status;
+    }
+
+    private boolean running() {
+        return status != null && status.state() == State.RUNNING;
+    }
+
+    private void run(Status from) {
+        Progress run = new Progress(from);
+        progress = run;
+        save(from);
+        LOG.info("Reindexing {} objects with prefix '{}' after '{}', job {}.", from.full() ? "all" : "changed", from.prefix(), from.startAfter(), id);
+
+        // unchanged objects are skipped right away, only the others are read for processing and take from the s3 limit
+        Flux<S3Entry> listed = listing.list(from.prefix(), from.startAfter())
+                .doOnNext(entry -> run.listed(entry.key()))
+                .filter(entry -> {
+                    boolean index = from.full() || catalog.changed(repository.stored(entry));
+                    if (!index) {
+                        done(run, entry.key(), run.skipped);
+                    }
+                    return index;
+                })
+                .transform(s3Limit::limit);
+        subscription = repository.process(listed, entry -> done(run, entry.key(), run.skipped))
+                .transform(indexer)
+                .subscribe(
+                        result -> done(run, result.key(), result.successful() ? run.indexed : run.failed),
+                        e -> finish(run, State.FAILED, e),
+                        () -> finish(run, State.DONE, null));
+    }
+
+    private synchronized void done(Progress run, String key, AtomicLong counter) {
+        counter.incrementAndGet();
+        if (run.done(key) && run == progress && running() && System.currentTimeMillis() - saved > SAVE_INTERVAL) {
+            save(run.snapshot(State.RUNNING));
+        }
+    }
+
+    private synchronized void finish(Progress run, State state, Throwable e) {
+        if (run != progress || !running()) {
+            return;
+        }
+        Status finished = run.snapshot(state);
+        save(finished);
+        if (e != null) {
+            LOG.error("Reindexing prefix '{}' failed after '{}', job {}.", finished.prefix(), finished.startAfter(), id, e);
+        } else {
+            LOG.info("Reindexing prefix '{}' done, {} indexed, {} failed, {} skipped, job {}.", finished.prefix(), finished.indexed(), finished.failed(), finished.skipped(), id);
+        }
+    }
+
+    private void stop(State state) {
+        Status stopped = progress.snapshot(state);
+        // save first, results of the disposed run are ignored afterwards
+        save(stopped);
+        subscription.dispose();
+        LOG.info("Reindexing prefix '{}' {} after '{}', job {}.", stopped.prefix(), state.name().toLowerCase(), stopped.startAfter(), id);
+    }
+
+    private void save(Status status) {
+        this.status = status;
+        this.saved = System.currentTimeMillis();
+        try {
+            catalog.checkpoint(CHECKPOINT + id, objectMapper.writeValueAsString(status));
+        } catch (JsonProcessingException e) {
+            LOG.error("Failed to persist reindex checkpoint.", e);
+        }
+    }
+
+    /**
+     * Keys in flight of a single run. The listing is ordered, so the first key not yet done bounds the checkpoint.
+     */
+    static class Progress {
+
+        private final ConcurrentSkipListMap<String, Boolean> inFlight = new ConcurrentSkipListMap<>();
+        private final Status from;
+        private final long resumed = System.currentTimeMillis();
+        final AtomicLong indexed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        private volatile String startAfter;
+
+        Progress(Status from) {
+            this.from = from;
+            this.startAfter = from.startAfter();
+        }
+
+        void listed(String key) {
+            inFlight.put(key, false);
+        }
+
+        // true if the checkpoint moved
+        synchronized boolean done(String key) {
+            inFlight.computeIfPresent(key, (k, done) -> true);
+            boolean moved = false;
+            Map.Entry<String, Boolean> first;
+            while ((first = inFlight.firstEntry()) != null && first.getValue()) {
+                inFlight.remove(first.getKey());
+                startAfter = first.getKey();
+                moved = true;
+            }
+            return moved;
+        }
+
+        String startAfter() {
+            return startAfter;
+        }
+
+        Status snapshot(State state) {
+            long elapsed = from.elapsed() + System.currentTimeMillis() - resumed;
+            long indexed = from.indexed() + this.indexed.get();
+            return new Status(from.id(), state, from.prefix(), from.full(), startAfter, indexed,
+                    from.failed() + failed.get(), from.skipped() + skipped.get(), from.started(), elapsed,
+                    elapsed > 0 ? indexed * 1000d / elapsed : 0);
+        }
+    }
+}
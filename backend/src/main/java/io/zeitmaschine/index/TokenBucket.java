@@ -0,0 +1,55 @@
+package io.zeitmaschine.index;
+
+import java.time.Duration;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Refills at a fixed rate up to the burst size. Tokens are reserved ahead, a caller finding the bucket empty is
+ * told how long to wait for its token instead of polling.
+ */
+class TokenBucket {
+
+    private final double rate;
+    private final double burst;
+    private double tokens;
+    private long refilled;
+
+    TokenBucket(JobsConfig.RateLimit config) {
+        this(config.getRate(), config.getBurst());
+    }
+
+    TokenBucket(double rate, int burst) {
+        this.rate = rate;
+        this.burst = Math.max(burst, 1);
+        this.tokens = this.burst;
+        this.refilled = System.nanoTime();
+    }
+
+    boolean limited() {
+        return rate > 0;
+    }
+
+    // nanos to wait until the reserved token is available
+    synchronized long reserve() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilled) * rate / 1e9);
+        refilled = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens * 1e9 / rate);
+    }
+
+    Mono<Void> acquire() {
+        if (!limited()) {
+            return Mono.empty();
+        }
+        long wait = reserve();
+        return wait == 0 ? Mono.empty() : Mono.delay(Duration.ofNanos(wait)).then();
+    }
+
+    // elements pass at most at the bucket's rate
+    <T> Flux<T> limit(Flux<T> flux) {
+        return limited() ? flux.concatMap(element -> acquire().thenReturn(element), 1) : flux;
+    }
+}
@@ -0,0 +1,217 @@
+package io.zeitmaschine.index;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+import io.micrometer.core.instrument.Tags;
+import io.zeitmaschine.catalog.Catalog;
+import io.zeitmaschine.s3.S3Entry;
+import io.zeitmaschine.s3.S3Repository;
+import io.zeitmaschine.tracing.Spans;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+/**
+ * One long-lived pipeline for all bucket notifications. Events are collected for a window or up to a batch, only
+ * the last event per key is processed, one batch after the other. Notifications beyond the capacity of pending
+ * events are refused, s3 delivers them again later.
+ * <p>
+ * Objects failing for a reason that may pass (s3 or elastic unavailable) are retried with a backoff, the following
+ * batches wait until a batch is done. Objects still failing after the retries are logged and given up on.
+ * <p>
+ * With a journal, events are journaled before being accepted and the ones not processed before a restart are
+ * replayed ahead of any new notification. Processing starts once the application is ready.
+ */
+class WebhookIngest implements DisposableBean {
+
+    private final static Logger LOG = LoggerFactory.getLogger(WebhookIngest.class.getName());
+
+    // position in the journal, if any
+    record Event(String key, boolean removed, long position) {
+
+        Event(String key, boolean removed) {
+            this(key, removed, -1);
+        }
+    }
+
+    private final S3Repository repository;
+    private final String bucket;
+    private final Function<Flux<S3Entry>, Flux<IndexResult>> indexer;
+    private final Function<List<String>, Mono<Long>> deleter;
+    private final Catalog catalog;
+    private final JobsConfig.Webhook config;
+    private final EventJournal journal;
+    private final Spans spans;
+
+    private final Sinks.Many<Event> sink = Sinks.many().unicast().onBackpressureBuffer();
+    private final AtomicInteger pending = new AtomicInteger();
+    private Disposable subscription;
+
+    WebhookIngest(S3Repository repository, String bucket, Function<Flux<S3Entry>, Flux<IndexResult>> indexer,
+            Function<List<String>, Mono<Long>> deleter, Catalog catalog, JobsConfig.Webhook config, EventJournal journal) {
+        this(repository, bucket, indexer, deleter, catalog, config, journal, Spans.NOOP);
+    }
+
+    WebhookIngest(S3Repository repository, String bucket, Function<Flux<S3Entry>, Flux<IndexResult>> indexer,
+            Function<List<String>, Mono<Long>> deleter, Catalog catalog, JobsConfig.Webhook config, EventJournal journal, Spans spans) {
+        this.repository = repository;
+        this.bucket = bucket;
+        this.indexer = indexer;
+        this.deleter = deleter;
+        this.catalog = catalog;
+        this.config = config;
+        this.journal = journal;
+        this.spans = spans;
+        // ahead of any submitted notification, a later event for the same key wins
+        replay();
+    }
+
+    // the index is set up on context refresh, processing from the constructor would run ahead of it. Until then
+    // events are buffered by the sink.
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        this.subscription = sink.asFlux()
+                .bufferTimeout(config.getBatch(), config.getWindow())
+                // bufferTimeout doesn't wait for demand, batches queue up here, bounded by the pending events
+                .onBackpressureBuffer()
+                // a trace per batch, the notifying requests are long done
+                .concatMap(events -> spans.root("webhook batch", Tags.of("events", String.valueOf(events.size())), process(events))
+                        .doOnSuccess(done -> done(events)), 1)
+                .subscribe();
+    }
+
+    // false if at capacity
+    boolean submit(List<Event> events) {
+        if (pending.addAndGet(events.size()) > config.getCapacity()) {
+            pending.addAndGet(-events.size());
+            return false;
+        }
+        // concurrent requests, the sink needs serialized emissions and the journal the same order
+        synchronized (sink) {
+            try {
+                List<Event> accepted = journal != null ? journal.append(events) : events;
+                accepted.forEach(event -> sink.emitNext(event, Sinks.EmitFailureHandler.FAIL_FAST));
+            } catch (IOException e) {
+                LOG.error("Failed to journal {} notifications.", events.size(), e);
+                pending.addAndGet(-events.size());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void replay() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            List<Event> events = journal.replay();
+            if (!events.isEmpty()) {
+                LOG.info("Replaying {} journaled notifications.", events.size());
+                pending.addAndGet(events.size());
+                synchronized (sink) {
+                    events.forEach(event -> sink.emitNext(event, Sinks.EmitFailureHandler.FAIL_FAST));
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to replay journaled notifications.", e);
+        }
+    }
+
+    // batches are processed in journal order, all before the batch's last event are done as well. Only called once
+    // the batch succeeded, until then it's replayed after a restart.
+    private void done(List<Event> events) {
+        if (journal != null) {
+            try {
+                journal.commit(events.get(events.size() - 1).position());
+            } catch (IOException e) {
+                LOG.error("Failed to commit journaled notifications.", e);
+            }
+        }
+        pending.addAndGet(-events.size());
+    }
+
+    int pending() {
+        return pending.get();
+    }
+
+    // unfinished batches aren't committed, they are replayed on the next start
+    @Override
+    public void destroy() throws IOException {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private Mono<Void> process(List<Event> events) {
+        // the last event wins, a put followed by a delete is a delete
+        Map<String, Boolean> latest = new LinkedHashMap<>();
+        events.forEach(event -> latest.put(event.key(), event.removed()));
+        LOG.info("Processing {} notifications, {} objects.", events.size(), latest.size());
+
+        // keys leave once done, a retry is for the failed ones only
+        Map<String, Boolean> remaining = Collections.synchronizedMap(new LinkedHashMap<>(latest));
+        return Mono.defer(() -> attempt(remaining))
+                .doOnError(e -> LOG.error("Failed to process {} of {} notified objects, retrying.", remaining.size(), latest.size(), e))
+                .retryWhen(Retry.backoff(config.getRetries(), config.getRetryBackoff()).maxBackoff(config.getMaxBackoff()))
+                // don't hold up all later batches, a prefix reindex picks the given up objects up again
+                .onErrorResume(Exceptions::isRetryExhausted, e -> {
+                    LOG.error("Giving up on notified objects after {} retries: {}", config.getRetries(), remaining.keySet());
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> attempt(Map<String, Boolean> remaining) {
+        List<String> deleted;
+        List<String> changed;
+        synchronized (remaining) {
+            deleted = remaining.entrySet().stream().filter(Map.Entry::getValue).map(Map.Entry::getKey).toList();
+            changed = remaining.entrySet().stream().filter(event -> !event.getValue()).map(Map.Entry::getKey).toList();
+        }
+
+        Mono<Void> delete = deleted.isEmpty() ? Mono.empty() : deleter.apply(deleted)
+                .doOnNext(count -> deleted.forEach(key -> {
+                    catalog.remove(key);
+                    remaining.remove(key);
+                }))
+                .then();
+        // gone or not an image is done, failures to get the object are retried
+        Mono<Void> index = changed.isEmpty() ? Mono.empty() : indexer.apply(Flux.fromIterable(changed)
+                        .flatMap(key -> repository.get(bucket, key)
+                                .switchIfEmpty(Mono.fromRunnable(() -> remaining.remove(key)))
+                                .doOnError(e -> LOG.error("Failed to get notified object '{}'.", key, e))
+                                .onErrorResume(e -> Mono.empty()), config.getConcurrency()))
+                .doOnNext(result -> {
+                    if (result.successful()) {
+                        remaining.remove(result.key());
+                    } else if (!result.retryable()) {
+                        // won't ever be indexed, mapping errors etc.
+                        LOG.error("Failed to index notified object '{}': {}", result.key(), result.error());
+                        remaining.remove(result.key());
+                    }
+                })
+                .then();
+        return delete.then(index)
+                .then(Mono.defer(() -> remaining.isEmpty()
+                        ? Mono.empty()
+                        : Mono.error(new IllegalStateException("%d notified objects not processed.".formatted(remaining.size())))));
+    }
+}
@@ -0,0 +1,175 @@
+package io.zeitmaschine.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.zeitmaschine.tracing.Spans;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Meters of the calls to one of the services we depend on (s3, imaginary, elastic), tagged with the operation and
+ * whatever else tells the calls apart, e.g. the bucket or the dimension.
+ * <ul>
+ * <li>{prefix}.calls: timer, outcome success, empty (e.g. no such object) or error</li>
+ * <li>{prefix}.bytes: counter, direction sent or received</li>
+ * <li>{prefix}.errors: counter, exception</li>
+ * </ul>
+ * Cancelled calls aren't timed, the caller wasn't interested anymore. The timed calls are spans as well, named
+ * after the service and operation, e.g. "s3 get".
+ */
+public class CallMetrics {
+
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws Exception;
+    }
+
+    private final MeterRegistry registry;
+    private final Spans spans;
+    private final String service;
+    private final String calls;
+    private final String bytes;
+    private final String errors;
+
+    public CallMetrics(String prefix, MeterRegistry registry) {
+        this(prefix, registry, Spans.NOOP);
+    }
+
+    public CallMetrics(String prefix, MeterRegistry registry, Spans spans) {
+        this.registry = registry;
+        this.spans = spans;
+        this.service = prefix;
+        this.calls = prefix + ".calls";
+        this.bytes = prefix + ".bytes";
+        this.errors = prefix + ".errors";
+    }
+
+    /**
+     * From subscription until the value, completion or error.
+     */
+    public <T> Mono<T> time(Tags tags, Mono<T> call) {
+        return spans.child(operation(tags), service, tags, Mono.defer(() -> {
+            Timer.Sample sample = start();
+            return call
+                    .doOnSuccess(value -> stop(sample, tags, value != null ? "success" : "empty"))
+                    .doOnError(e -> failure(sample, tags, e));
+        }));
+    }
+
+    /**
+     * From subscription until completion or error, includes the time the downstream takes.
+     */
+    public <T> Flux<T> time(Tags tags, Flux<T> call) {
+        return spans.child(operation(tags), service, tags, Flux.defer(() -> {
+            Timer.Sample sample = start();
+            return call
+                    .doOnComplete(() -> success(sample, tags))
+                    .doOnError(e -> failure(sample, tags, e));
+        }));
+    }
+
+    public <T> T time(Tags tags, Call<T> call) throws Exception {
+        return spans.child(operation(tags), service, tags, () -> {
+            Timer.Sample sample = start();
+            try {
+                T result = call.call();
+                stop(sample, tags, result != null ? "success" : "empty");
+                return result;
+            } catch (Exception e) {
+                failure(sample, tags, e);
+                throw e;
+            }
+        });
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    public void success(Timer.Sample sample, Tags tags) {
+        stop(sample, tags, "success");
+    }
+
+    public void failure(Timer.Sample sample, Tags tags, Throwable e) {
+        stop(sample, tags, "error");
+        Counter.builder(errors)
+                .tags(tags)
+                .tag("exception", e.getClass().getSimpleName())
+                .register(registry)
+                .increment();
+    }
+
+    private String operation(Tags tags) {
+        return tags.stream()
+                .filter(tag -> tag.getKey().equals("operation"))
+                .map(tag -> service + " " + tag.getValue())
+                .findFirst()
+                .orElse(service);
+    }
+
+    private void stop(Timer.Sample sample, Tags tags, String outcome) {
+        sample.stop(Timer.builder(calls)
+                .tags(tags)
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    public void sent(Tags tags, long count) {
+        count(tags, "sent", count);
+    }
+
+    public void received(Tags tags, long count) {
+        count(tags, "received", count);
+    }
+
+    /**
+     * Counts the bytes as they are read from the stream.
+     */
+    public InputStream received(Tags tags, InputStream stream) {
+        Counter counter = counter(tags, "received");
+        return new FilterInputStream(stream) {
+            @Override
+            public int read() throws IOException {
+                int read = super.read();
+                if (read >= 0) {
+                    counter.increment();
+                }
+                return read;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    counter.increment(read);
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                counter.increment(skipped);
+                return skipped;
+            }
+        };
+    }
+
+    private void count(Tags tags, String direction, long count) {
+        counter(tags, direction).increment(count);
+    }
+
+    private Counter counter(Tags tags, String direction) {
+        return Counter.builder(bytes)
+                .baseUnit("bytes")
+                .tags(tags)
+                .tag("direction", direction)
+                .register(registry);
+    }
+}
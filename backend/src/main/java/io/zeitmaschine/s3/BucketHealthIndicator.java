@@ -19,6 +19,9 @@ public class BucketHealthIndicator implements ReactiveHealthIndicator {
 
     @Override
     public Mono<Health> health() {
-        return repository.health() ? Mono.just(Health.up().build()) : Mono.just(Health.down().build());
+        // the repository check is blocking, keep it off the event loop
+        return Mono.fromCallable(repository::health)
+                .map(healthy -> healthy ? Health.up().build() : Health.down().build())
+                .subscribeOn(repository.scheduler());
     }
 }
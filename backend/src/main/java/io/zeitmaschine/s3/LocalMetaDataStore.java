@@ -0,0 +1,90 @@
+package io.zeitmaschine.s3;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Keeps the metadata in a local MVStore file keyed by object key. Stored metadata is only used as long as the
+ * object's ETag didn't change, the media objects are never rewritten.
+ */
+@Component
+@ConditionalOnProperty(prefix = "s3.metadata", name = "store", havingValue = "local")
+public class LocalMetaDataStore implements MetaDataStore, DisposableBean {
+
+    private final static Logger LOG = LoggerFactory.getLogger(LocalMetaDataStore.class.getName());
+
+    private final MVStore store;
+    private final MVMap<String, String> metaData;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    public LocalMetaDataStore(S3Config config) {
+        this(config.getMetadata().getPath());
+        LOG.info("Storing metadata in '{}'.", config.getMetadata().getPath());
+    }
+
+    // Used for test, in memory if the file name is null
+    LocalMetaDataStore(String fileName) {
+        this.store = new MVStore.Builder()
+                .fileName(fileName)
+                .compress()
+                .open();
+        this.metaData = store.openMap("metadata");
+    }
+
+    @Override
+    public Optional<S3Entry> get(S3Entry entry) {
+        return Optional.ofNullable(metaData.get(entry.key()))
+                .flatMap(this::read)
+                .filter(stored -> Objects.equals(stored.etag(), entry.etag()))
+                .map(stored -> {
+                    Map<String, String> merged = new HashMap<>(entry.metaData());
+                    merged.putAll(stored.metaData());
+                    return S3Entry.Builder.from(entry)
+                            .contentType(stored.contentType())
+                            .metaData(merged)
+                            .build();
+                });
+    }
+
+    @Override
+    public void put(S3Entry processed) {
+        try {
+            Stored stored = new Stored(processed.etag(), processed.contentType(), processed.metaData());
+            metaData.put(processed.key(), objectMapper.writeValueAsString(stored));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to store metadata of '%s'.".formatted(processed.key()), e);
+        }
+    }
+
+    private Optional<Stored> read(String json) {
+        try {
+            return Optional.of(objectMapper.readValue(json, Stored.class));
+        } catch (JsonProcessingException e) {
+            LOG.error("Failed to read stored metadata, ignoring it.", e);
+            return Optional.empty();
+        }
+    }
+
+    // also commits pending changes, they're committed in the background every second otherwise.
+    @Override
+    public void destroy() {
+        store.close();
+    }
+
+    record Stored(String etag, String contentType, Map<String, String> metaData) {}
+}
@@ -1,18 +1,24 @@
 package io.zeitmaschine.s3;
 
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.zeitmaschine.index.IndexEndpoint;
+import io.zeitmaschine.tracing.Spans;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
-public class MetaDataProcessingRepository implements S3Repository {
+public class MetaDataProcessingRepository implements S3Repository, DisposableBean {
 
     private final static Logger LOG = LoggerFactory.getLogger(IndexEndpoint.class.getName());
 
@@ -30,16 +36,36 @@ public class MetaDataProcessingRepository implements S3Repository {
 
     private S3Repository s3Repository;
     private Processor processor;
-
-    MetaDataProcessingRepository(S3Repository s3Repository) {
-        this.s3Repository = s3Repository;
-        this.processor = new Processor(s3Entry -> metaData(s3Entry.key(), s3Entry.metaData(), s3Entry.contentType()));
+    // the processor's write backs, drained on destroy
+    private final WriteBehindQueue writeBack;
+    private final MetaDataStore store;
+    private final S3Config.Metadata config;
+    private final Scheduler scheduler;
+    private final Spans spans;
+
+    private MetaDataProcessingRepository(S3Repository s3Repository, WriteBehindQueue writeBack, S3Config.Metadata config, MetaDataStore store, MeterRegistry registry, Spans spans) {
+        this(s3Repository, new Processor(store::put, writeBack, config, registry, spans), writeBack, config, store, spans);
     }
 
-    // Used for test, not so nice, refactor Consumer creation?
-    MetaDataProcessingRepository(S3Repository s3Repository, Processor processor) {
+    MetaDataProcessingRepository(S3Repository s3Repository, Processor processor, WriteBehindQueue writeBack, S3Config.Metadata config, MetaDataStore store, Spans spans) {
         this.s3Repository = s3Repository;
         this.processor = processor;
+        this.writeBack = writeBack;
+        this.store = store;
+        this.config = config;
+        this.scheduler = scheduler(config);
+        this.spans = spans;
+    }
+
+    // processing blocks on s3, one thread per object in process.
+    private static Scheduler scheduler(S3Config.Metadata config) {
+        return Schedulers.newBoundedElastic(config.getParallelism(), Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "metadata", 60, true);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+        writeBack.shutdown();
     }
 
     @Override
@@ -55,8 +81,9 @@ public class MetaDataProcessingRepository implements S3Repository {
     @Override
     public Mono<S3Entry> get(String bucket, String key) {
         return s3Repository.get(bucket, key)
+                .map(this::stored)
                 .filter(contentTypeFilter)
-                .map(s3Entry -> processor.process(s3Entry));
+                .flatMap(this::process);
     }
 
     @Override
@@ -69,14 +96,60 @@ public class MetaDataProcessingRepository implements S3Repository {
         s3Repository.metaData(key, metaData, contentType);
     }
 
+    @Override
+    public Scheduler scheduler() {
+        return s3Repository.scheduler();
+    }
+
     @Override
     public Flux<S3Entry> get(String prefix) {
-        return s3Repository.get(prefix)
-                .filter(contentTypeFilter)
-                .map(s3Entry -> processor.process(s3Entry));
+        return process(s3Repository.get(prefix), filtered -> {});
+    }
+
+    @Override
+    public Flux<S3Entry> list(String prefix, String startAfter) {
+        return process(s3Repository.list(prefix, startAfter), filtered -> {});
+    }
+
+    /**
+     * Processes listed entries, the ones not being images are passed to {@code filtered} instead of being emitted.
+     */
+    public Flux<S3Entry> process(Flux<S3Entry> listed, Consumer<S3Entry> filtered) {
+        Flux<S3Entry> entries = listed
+                .map(this::stored)
+                .filter(entry -> {
+                    boolean image = contentTypeFilter.test(entry);
+                    if (!image) {
+                        filtered.accept(entry);
+                    }
+                    return image;
+                });
+        // at most parallelism entries are requested from the listing, further ones only as the downstream (indexer) asks.
+        return config.isOrdered()
+                ? entries.flatMapSequential(this::process, config.getParallelism())
+                : entries.flatMap(this::process, config.getParallelism());
+    }
+
+    /**
+     * The entry with its stored metadata, already processed entries come back with the version marker and are
+     * skipped by the processor.
+     */
+    public S3Entry stored(S3Entry s3Entry) {
+        return store.get(s3Entry).orElse(s3Entry);
+    }
+
+    // the processor blocks, the span of the subscriber is put in scope for its calls
+    private Mono<S3Entry> process(S3Entry s3Entry) {
+        return Mono.deferContextual(context -> Mono.fromCallable(spans.wrap(context, () -> processor.process(s3Entry))))
+                .subscribeOn(scheduler);
+    }
+
+    public static MetaDataProcessingRepository wrap(S3Repository s3Repository, S3Config.Metadata config, MetaDataStore store, MeterRegistry registry) {
+        return wrap(s3Repository, config, store, registry, Spans.NOOP);
     }
 
-    public static S3Repository wrap(S3Repository s3Repository) {
-        return new MetaDataProcessingRepository(s3Repository);
+    // a single write back queue for all processing, its meters are registered once
+    public static MetaDataProcessingRepository wrap(S3Repository s3Repository, S3Config.Metadata config, MetaDataStore store, MeterRegistry registry, Spans spans) {
+        return new MetaDataProcessingRepository(s3Repository, new WriteBehindQueue("metadata", config.getWriteBack(), registry), config, store, registry, spans);
     }
 }
@@ -0,0 +1,16 @@
+package io.zeitmaschine.s3;
+
+import java.util.Optional;
+
+/**
+ * Where the metadata extracted by the {@link Processor} is kept.
+ */
+public interface MetaDataStore {
+
+    /**
+     * The entry with the metadata stored for this version (ETag) of the object, empty if there is none.
+     */
+    Optional<S3Entry> get(S3Entry entry);
+
+    void put(S3Entry processed);
+}
@@ -1,5 +1,6 @@
 package io.zeitmaschine.s3;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -9,11 +10,14 @@ import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.minio.BucketExistsArgs;
 import io.minio.CopyObjectArgs;
 import io.minio.CopySource;
@@ -25,7 +29,6 @@ import io.minio.ListObjectsArgs;
 import io.minio.MakeBucketArgs;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
-import io.minio.Result;
 import io.minio.SetBucketNotificationArgs;
 import io.minio.StatObjectArgs;
 import io.minio.StatObjectResponse;
@@ -34,11 +37,15 @@ import io.minio.messages.EventType;
 import io.minio.messages.Item;
 import io.minio.messages.NotificationConfiguration;
 import io.minio.messages.QueueConfiguration;
+import io.zeitmaschine.metrics.CallMetrics;
+import io.zeitmaschine.tracing.Spans;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 @Service
-public class MinioRepository implements S3Repository {
+public class MinioRepository implements S3Repository, DisposableBean {
 
     private final static Logger log = LoggerFactory.getLogger(MinioRepository.class.getName());
     public static final String UNKNOWN_CONTENT_TYPE = "unknown";
@@ -47,28 +54,62 @@ public class MinioRepository implements S3Repository {
     private final String bucket;
     private final String cacheBucket;
     private final boolean webhook;
+    private final S3Config.Listing listing;
 
-    private MinioClient minioClient;
+    private final MinioClient minioClient;
+    // The minio client is blocking, all calls are offloaded here to keep them off the netty event loops. Shared with
+    // the callers reading the objects' streams, it bounds the concurrent s3 calls.
+    private final Scheduler scheduler;
+    // s3.calls, s3.bytes and s3.errors by operation and bucket
+    private final CallMetrics metrics;
+
+    public MinioRepository(S3Config config, MeterRegistry registry) {
+        this(config, registry, Spans.NOOP);
+    }
 
     @Autowired
-    public MinioRepository(S3Config config) {
+    public MinioRepository(S3Config config, MeterRegistry registry, Spans spans) {
+        this(config, MinioClient.builder()
+                .endpoint(config.getHost())
+                .credentials(config.getAccess().getKey(), config.getAccess().getSecret()).build(), registry, spans);
+    }
+
+    public MinioRepository(S3Config config, MinioClient minioClient, MeterRegistry registry) {
+        this(config, minioClient, registry, Spans.NOOP);
+    }
+
+    public MinioRepository(S3Config config, MinioClient minioClient, MeterRegistry registry, Spans spans) {
         this.host = config.getHost();
         this.webhook = config.isWebhook();
         this.bucket = config.getBucket();
         this.cacheBucket = config.getCacheBucket();
-
-        String key = config.getAccess().getKey();
-        String secret = config.getAccess().getSecret();
+        this.listing = config.getListing();
 
         log.info("s3 host: {}", host);
         log.info("s3 bucket: {}", bucket);
         log.info("s3 cache-bucket: {}", cacheBucket);
-        log.info("s3 access key: {}", key);
+        log.info("s3 access key: {}", config.getAccess().getKey());
         log.info("s3 webhook: {}", webhook);
+        log.info("s3 threads: {}", config.getThreads());
+        log.info("s3 listing fan-out: {}", listing.getFanOut());
+
+        this.minioClient = minioClient;
+        this.scheduler = Schedulers.newBoundedElastic(config.getThreads(), config.getQueuedTasks(), "s3", 60, true);
+        this.metrics = new CallMetrics("s3", registry, spans);
+    }
+
+    @Override
+    public Scheduler scheduler() {
+        return scheduler;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
 
-        this.minioClient = MinioClient.builder()
-                .endpoint(host)
-                .credentials(key, secret).build();
+    private static Tags tags(String operation, String bucket) {
+        return Tags.of("operation", operation, "bucket", bucket);
     }
 
     @Override
@@ -158,46 +199,49 @@ public class MinioRepository implements S3Repository {
                 .bucket(bucket)
                 .object(key)
                 .build();
-        try {
-            StatObjectResponse response = minioClient.statObject(stat);
-            // mark the difference to io.zeitmaschine.s3.S3Repository.get(java.lang.String)
-            // userMetaData and response are different in these two cases.
-            String contentType = response.contentType();
-            S3Entry entry = S3Entry.builder()
-                    .key(key) // or response.object() ?
-                    .size(response.size())
-                    .contentType(contentType)
-                    .resourceSupplier(getResourceSupplier(bucket, key))
-                    .metaData(response.userMetadata())
-                    .build();
-
-            return Mono.just(entry);
-
-        } catch (ErrorResponseException e) {
-            switch (e.errorResponse().code()) {
-            case "NoSuchKey":
-            case "ResourceNotFound":
-                log.debug("No object found for '{}'.", key);
-                return Mono.empty();
-            default:
-                // Mono.error ?
-                throw new RuntimeException(String.format("Failed to fetch object '%s' from S3.", key), e);
-            }
-        } catch (Exception e) {
-            // Mono.error ?
-            throw new RuntimeException(String.format("Failed to fetch object '%s' from S3.", key), e);
-        }
+        // timed on the scheduler, the time queued for a thread isn't the call's
+        return metrics.time(tags("stat", bucket), Mono.fromCallable(() -> {
+                    StatObjectResponse response = minioClient.statObject(stat);
+                    // mark the difference to io.zeitmaschine.s3.S3Repository.get(java.lang.String)
+                    // userMetaData and response are different in these two cases.
+                    String contentType = response.contentType();
+                    return S3Entry.builder()
+                            .key(key) // or response.object() ?
+                            .size(response.size())
+                            .etag(response.etag())
+                            .lastModified(response.lastModified() != null ? response.lastModified().toInstant() : null)
+                            .contentType(contentType)
+                            .resourceSupplier(getResourceSupplier(bucket, key))
+                            .rangeReader(getRangeReader(bucket, key))
+                            .metaData(response.userMetadata())
+                            .build();
+                })
+                .onErrorResume(ErrorResponseException.class, e -> {
+                    switch (e.errorResponse().code()) {
+                    case "NoSuchKey":
+                    case "ResourceNotFound":
+                        log.debug("No object found for '{}'.", key);
+                        return Mono.empty();
+                    default:
+                        return Mono.error(e);
+                    }
+                }))
+                .onErrorMap(e -> new RuntimeException(String.format("Failed to fetch object '%s' from S3.", key), e))
+                .subscribeOn(scheduler);
     }
 
     @Override
     public void put(String bucket, String key, Resource resource, String contentType) {
-        try {
-            minioClient.putObject(PutObjectArgs.builder()
+        Tags tags = tags("put", bucket);
+        try (InputStream stream = resource.getInputStream()) {
+            long size = resource.contentLength();
+            metrics.time(tags, () -> minioClient.putObject(PutObjectArgs.builder()
                     .bucket(bucket)
                     .object(key)
-                    .stream(resource.getInputStream(), resource.contentLength(), -1)
+                    .stream(stream, size, -1)
                     .contentType(contentType)
-                    .build());
+                    .build()));
+            metrics.sent(tags, size);
         } catch (Exception e) {
             throw new RuntimeException("Error while writing object '%s' to s3.".formatted(key), e);
         }
@@ -219,7 +263,7 @@ public class MinioRepository implements S3Repository {
                     .metadataDirective(Directive.REPLACE)
                     .userMetadata(metaData)
                     .build();
-            minioClient.copyObject(build);
+            metrics.time(tags("copy", bucket), () -> minioClient.copyObject(build));
         } catch (Exception e) {
             log.error("Error while writing metadata for object '%s' to s3.".formatted(key), e);
         }
@@ -233,27 +277,77 @@ public class MinioRepository implements S3Repository {
      */
     @Override
     public Flux<S3Entry> get(String prefix) {
-        try {
-            ListObjectsArgs listArgs = ListObjectsArgs.builder()
-                    .bucket(bucket)
-                    .prefix(prefix)
-                    .recursive(true)
-                    .includeUserMetadata(true)
-                    .build();
-            return Flux.fromIterable(minioClient.listObjects(listArgs))
-                    .flatMap(itemResult -> toS3Entry(itemResult)
-                            .doOnError(ex -> log.error("Failed to process image.", ex))
-                            .onErrorResume(ex -> Mono.empty()));
-        } catch (Exception e) {
-            log.error("Error fetching objects with prefix '{}' from s3: ", prefix, e);
-            return Flux.error(e);
+        return list(prefix, null);
+    }
+
+    /**
+     * With a fan-out, the sub-prefixes ("folders") below the prefix are listed concurrently. They are still merged in
+     * key order, the ones after the sub-prefix being consumed list ahead up to the prefetch.
+     */
+    @Override
+    public Flux<S3Entry> list(String prefix, String startAfter) {
+        if (listing.getFanOut() <= 1) {
+            return listing(prefix, startAfter);
+        }
+        return shards(prefix, startAfter);
+    }
+
+    // The level right below the prefix is streamed, a single sub-prefix is descended into to find more. A level
+    // without sub-prefixes is just its objects, in listing order.
+    private Flux<S3Entry> shards(String prefix, String startAfter) {
+        return level(prefix, startAfter)
+                .switchOnFirst((first, items) -> first.hasValue() && first.get().isDir()
+                        ? items.skip(1).switchOnFirst((second, rest) -> second.isOnComplete()
+                                ? shards(first.get().objectName(), startAfter)
+                                : fanOut(Flux.concat(Mono.just(first.get()), rest), startAfter))
+                        : fanOut(items, startAfter));
+    }
+
+    private Flux<S3Entry> fanOut(Flux<Item> items, String startAfter) {
+        return items.flatMapSequential(item -> item.isDir()
+                ? listing(item.objectName(), startAfter != null && startAfter.startsWith(item.objectName()) ? startAfter : null)
+                : toS3Entry(item).flux(), listing.getFanOut(), listing.getPrefetch());
+    }
+
+    // Objects and sub-prefixes right below the prefix, s3 rolls up the keys after startAfter.
+    private Flux<Item> level(String prefix, String startAfter) {
+        ListObjectsArgs.Builder builder = ListObjectsArgs.builder()
+                .bucket(bucket)
+                .prefix(prefix)
+                .includeUserMetadata(true);
+        if (startAfter != null) {
+            builder.startAfter(startAfter);
         }
+        ListObjectsArgs listArgs = builder.build();
+        return metrics.time(tags("list-prefixes", bucket), Flux.defer(() -> Flux.fromIterable(minioClient.listObjects(listArgs))))
+                .concatMap(itemResult -> Mono.fromCallable(itemResult::get))
+                .subscribeOn(scheduler);
+    }
+
+    private Flux<S3Entry> listing(String prefix, String startAfter) {
+        ListObjectsArgs.Builder builder = ListObjectsArgs.builder()
+                .bucket(bucket)
+                .prefix(prefix)
+                .recursive(true)
+                .includeUserMetadata(true);
+        if (startAfter != null) {
+            builder.startAfter(startAfter);
+        }
+        ListObjectsArgs listArgs = builder.build();
+        // The iterable fetches the next listing page while being iterated, requests must happen on the scheduler.
+        // Timed is the whole listing, the pages are fetched as the downstream asks for more.
+        return metrics.time(tags("list", bucket), Flux.defer(() -> Flux.fromIterable(minioClient.listObjects(listArgs))))
+                .flatMap(itemResult -> Mono.fromCallable(itemResult::get)
+                        .flatMap(this::toS3Entry)
+                        .doOnError(ex -> log.error("Failed to process image.", ex))
+                        .onErrorResume(ex -> Mono.empty()))
+                .doOnError(e -> log.error("Error fetching objects with prefix '{}' from s3: ", prefix, e))
+                .subscribeOn(scheduler);
     }
 
     // TODO: Function field?
-    private Mono<S3Entry> toS3Entry(Result<Item> itemResult) {
+    private Mono<S3Entry> toS3Entry(Item item) {
         try {
-            Item item = itemResult.get();
             String contentType = item.userMetadata().getOrDefault("content-type", UNKNOWN_CONTENT_TYPE);
             String objectKey = item.objectName();
             Map<String, String> metaData = new HashMap<>();
@@ -268,8 +362,12 @@ public class MinioRepository implements S3Repository {
                     .key(objectKey)
                     .contentType(contentType)
                     .size(item.size())
+                    // unlike the stat response, the listing keeps the quotes
+                    .etag(item.etag() != null ? item.etag().replace("\"", "") : null)
+                    .lastModified(item.lastModified() != null ? item.lastModified().toInstant() : null)
                     .metaData(metaData)
                     .resourceSupplier(getResourceSupplier(bucket, objectKey))
+                    .rangeReader(getRangeReader(bucket, objectKey))
                     .build();
 
             return Mono.just(entry);
@@ -278,17 +376,39 @@ public class MinioRepository implements S3Repository {
         }
     }
 
+    /*
+    Ranged GET of the remote S3 object, only the requested bytes go over the wire.
+     */
+    private RangeReader getRangeReader(String bucket, String key) {
+        return (offset, length) -> {
+            Tags tags = tags("get-range", bucket);
+            try {
+                // timed until the response headers, the bytes are counted as they are read
+                return metrics.received(tags, metrics.time(tags, () -> minioClient.getObject(GetObjectArgs.builder()
+                        .bucket(bucket)
+                        .object(key)
+                        .offset(offset)
+                        .length(length)
+                        .build())));
+            } catch (Exception e) {
+                throw new IOException("Failed to read range %d+%d of '%s'.".formatted(offset, length, key), e);
+            }
+        };
+    }
+
     /*
     Supplier to fetch the remote S3 object on demand.
     TODO: Supplier field?
      */
     private Supplier<Resource> getResourceSupplier(String bucket, String key) {
         return () -> {
+            Tags tags = tags("get", bucket);
             try {
-                InputStream i = minioClient.getObject(GetObjectArgs.builder()
+                // timed until the response headers, the bytes are counted as they are read
+                InputStream i = metrics.received(tags, metrics.time(tags, () -> minioClient.getObject(GetObjectArgs.builder()
                         .bucket(bucket)
                         .object(key)
-                        .build());
+                        .build())));
                 return new InputStreamResource(i);
                 // Alternatively: new org.springframework.core.io.ByteArrayResource(i.readAllBytes());
                 // Not sure what's smarter: InputStream is one use and throw away, afterwards it has to go over the wire.
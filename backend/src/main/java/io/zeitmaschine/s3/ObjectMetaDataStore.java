@@ -0,0 +1,33 @@
+package io.zeitmaschine.s3;
+
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the metadata as user metadata on the object itself. Writing it copies the whole object onto itself.
+ */
+@Component
+@ConditionalOnProperty(prefix = "s3.metadata", name = "store", havingValue = "object", matchIfMissing = true)
+public class ObjectMetaDataStore implements MetaDataStore {
+
+    private final S3Repository repository;
+
+    @Autowired
+    public ObjectMetaDataStore(S3Repository repository) {
+        this.repository = repository;
+    }
+
+    // listed and fetched entries already carry it
+    @Override
+    public Optional<S3Entry> get(S3Entry entry) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void put(S3Entry processed) {
+        repository.metaData(processed.key(), processed.metaData(), processed.contentType());
+    }
+}
@@ -2,6 +2,7 @@ package io.zeitmaschine.s3;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -21,8 +22,11 @@ import com.drew.metadata.Metadata;
 import com.drew.metadata.exif.ExifSubIFDDirectory;
 import com.drew.metadata.exif.GpsDirectory;
 
-import reactor.core.publisher.Sinks;
-import reactor.core.scheduler.Schedulers;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.zeitmaschine.metrics.CallMetrics;
+import io.zeitmaschine.tracing.Spans;
 
 public class Processor {
 
@@ -34,75 +38,108 @@ public class Processor {
     public static final String META_LOCATION_LAT = "zm-location-lat";
     public static final String META_CREATION_DATE = "zm-creation-date";
 
-    final Sinks.Many<S3Entry> publisher;
+    private static final Tags EXTRACT = Tags.of("operation", "extract");
 
-    public Processor(Consumer<S3Entry> subscriber) {
-        this.publisher = Sinks
-                .many()
-                .unicast()
-                .onBackpressureBuffer();
+    private final Consumer<S3Entry> writer;
+    private final WriteBehindQueue writeBack;
+    private final S3Config.Metadata config;
+    private final Spans spans;
+    // metadata.calls, metadata.bytes (read by the extraction) and metadata.errors
+    private final CallMetrics metrics;
 
-        publisher.asFlux()
-                .publishOn(Schedulers.boundedElastic())
-                .subscribe(subscriber);
+    public Processor(Consumer<S3Entry> writer, WriteBehindQueue writeBack, S3Config.Metadata config, MeterRegistry registry) {
+        this(writer, writeBack, config, registry, Spans.NOOP);
+    }
+
+    /**
+     * @param writer    writes the processed metadata back to the object, runs on the write back queue.
+     * @param writeBack shared with other processors, shut down by its owner.
+     */
+    public Processor(Consumer<S3Entry> writer, WriteBehindQueue writeBack, S3Config.Metadata config, MeterRegistry registry, Spans spans) {
+        this.writer = writer;
+        this.writeBack = writeBack;
+        this.config = config;
+        this.spans = spans;
+        this.metrics = new CallMetrics("metadata", registry, spans);
     }
 
     public S3Entry process(S3Entry processing) {
         Map<String, String> metaData = processing.metaData();
         String version = metaData.get(META_VERSION);
 
-        S3Entry processed = processing;
-
         if (version != null) {
             log.debug("S3Entry already processed '{}', skipping..", processing.key());
-        } else {
-            Map<String, String> processedMetaData = new HashMap<>(metaData);
-
-            String contentType = processing.contentType();
-            // exif extraction
-            try (BufferedInputStream inputStream = new BufferedInputStream(processing.resourceSupplier().get().getInputStream())) {
-                // BufferedInputStream needed for FileTypeDetector#detectFileType
-                if (contentType.equals(MediaType.APPLICATION_OCTET_STREAM_VALUE) || contentType.equals(MinioRepository.UNKNOWN_CONTENT_TYPE)) {
-                    // contentType extraction
-                    FileType fileType = FileTypeDetector.detectFileType(inputStream);
-
-                    // Allows re-reading the inputstream - hmm..
-                    inputStream.reset();
-                    if (fileType == FileType.Jpeg) {
-                        contentType = MediaType.IMAGE_JPEG_VALUE;
-                    } else if (fileType == FileType.Mp4) {
-                        // TODO "video/mp4" - but needs frontend filtering
-                    }
-                }
+            return processing;
+        }
+        return spans.child("metadata extract", EXTRACT, () -> extract(processing));
+    }
 
-                Metadata metadata = ImageMetadataReader.readMetadata(inputStream);
-
-                // Nullables
-                extractLocation(metadata).ifPresent(location -> {
-                    processedMetaData.put(META_LOCATION_LON, String.valueOf(location.lon()));
-                    processedMetaData.put(META_LOCATION_LAT, String.valueOf(location.lat()));
-                });
-                extractCreationDate(metadata).ifPresent(date -> {
-                    processedMetaData.put(META_CREATION_DATE, String.valueOf(date.getTime()));
-                });
-
-                processedMetaData.put(META_VERSION, META_VERSION_CURRENT);
-
-                // update metadata
-                processed = S3Entry.Builder.from(processing)
-                        .contentType(contentType)
-                        .metaData(processedMetaData)
-                        .build();
-
-                // Update
-                publisher.tryEmitNext(processed);
-            } catch (IOException | ImageProcessingException e) {
-                log.error("Failed to read metadata from file '{}'.", processing.key(), e);
+    private S3Entry extract(S3Entry processing) {
+        S3Entry processed = processing;
+        Map<String, String> processedMetaData = new HashMap<>(processing.metaData());
+
+        String contentType = processing.contentType();
+        Timer.Sample sample = metrics.start();
+        // exif extraction
+        try (BufferedInputStream inputStream = new BufferedInputStream(metrics.received(EXTRACT, open(processing)))) {
+            // BufferedInputStream needed for FileTypeDetector#detectFileType
+            if (contentType.equals(MediaType.APPLICATION_OCTET_STREAM_VALUE) || contentType.equals(MinioRepository.UNKNOWN_CONTENT_TYPE)) {
+                // contentType extraction
+                FileType fileType = FileTypeDetector.detectFileType(inputStream);
+
+                // Allows re-reading the inputstream - hmm..
+                inputStream.reset();
+                if (fileType == FileType.Jpeg) {
+                    contentType = MediaType.IMAGE_JPEG_VALUE;
+                } else if (fileType == FileType.Mp4) {
+                    // TODO "video/mp4" - but needs frontend filtering
+                }
             }
+
+            Metadata metadata = ImageMetadataReader.readMetadata(inputStream);
+
+            // Nullables
+            extractLocation(metadata).ifPresent(location -> {
+                processedMetaData.put(META_LOCATION_LON, String.valueOf(location.lon()));
+                processedMetaData.put(META_LOCATION_LAT, String.valueOf(location.lat()));
+            });
+            extractCreationDate(metadata).ifPresent(date -> {
+                processedMetaData.put(META_CREATION_DATE, String.valueOf(date.getTime()));
+            });
+
+            processedMetaData.put(META_VERSION, META_VERSION_CURRENT);
+
+            // update metadata
+            processed = S3Entry.Builder.from(processing)
+                    .contentType(contentType)
+                    .metaData(processedMetaData)
+                    .build();
+
+            // Update, a dropped write back is processed again the next time.
+            S3Entry update = processed;
+            // the copy is traced as part of the extraction
+            writeBack.submit(update.key(), spans.wrap(() -> writer.accept(update)));
+            metrics.success(sample, EXTRACT);
+        } catch (IOException | ImageProcessingException e) {
+            metrics.failure(sample, EXTRACT, e);
+            log.error("Failed to read metadata from file '{}'.", processing.key(), e);
+        } catch (RuntimeException e) {
+            metrics.failure(sample, EXTRACT, e);
+            throw e;
         }
         return processed;
     }
 
+    /*
+    The exif segments are at the start of the file, ranged reads fetch little more than those.
+     */
+    private InputStream open(S3Entry entry) throws IOException {
+        if (config.isRanged() && entry.rangeReader() != null && entry.size() > 0) {
+            return new RangedInputStream(entry.rangeReader(), entry.size(), config.getInitialRange().toBytes(), config.getMaxRange().toBytes());
+        }
+        return entry.resourceSupplier().get().getInputStream();
+    }
+
     private Optional<S3Entry.Location> extractLocation(Metadata metadata) {
         GpsDirectory gpsDirectory = metadata.getFirstDirectoryOfType(GpsDirectory.class);
         if (gpsDirectory != null) {
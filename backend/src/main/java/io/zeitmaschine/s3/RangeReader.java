@@ -0,0 +1,13 @@
+package io.zeitmaschine.s3;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a part of an object, the stream has to be closed by the caller.
+ */
+@FunctionalInterface
+public interface RangeReader {
+
+    InputStream read(long offset, long length) throws IOException;
+}
@@ -0,0 +1,117 @@
+package io.zeitmaschine.s3;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads an object with ranged GETs as far as it is consumed. The first range is {@code initialRange} bytes, every
+ * further range doubles up to {@code maxRange}. Skipped bytes are not fetched, metadata readers skip over most of the
+ * segments anyway. Reading on after a skip starts over with {@code initialRange}.
+ */
+class RangedInputStream extends InputStream {
+
+    private final RangeReader reader;
+    private final long initialRange;
+    private final long maxRange;
+    private long size;
+    private long range;
+
+    private byte[] buffer = new byte[0];
+    // object offset of buffer[0]
+    private long bufferStart;
+    // object offset of the next byte
+    private long position;
+    private long mark;
+
+    private long fetched;
+
+    RangedInputStream(RangeReader reader, long size, long initialRange, long maxRange) {
+        this.reader = reader;
+        this.size = size;
+        this.initialRange = initialRange;
+        this.maxRange = Math.max(initialRange, maxRange);
+        this.range = initialRange;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return buffer[(int) (position++ - bufferStart)] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = (int) Math.min(len, bufferStart + buffer.length - position);
+        System.arraycopy(buffer, (int) (position - bufferStart), b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, size - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.max(0, bufferStart + buffer.length - position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        mark = position;
+    }
+
+    @Override
+    public synchronized void reset() {
+        position = mark;
+    }
+
+    /*
+    Makes sure the byte at position is buffered, false at the end of the object.
+     */
+    private boolean fill() throws IOException {
+        if (position >= size) {
+            return false;
+        }
+        if (position >= bufferStart && position < bufferStart + buffer.length) {
+            return true;
+        }
+        if (position != bufferStart + buffer.length) {
+            // skipped or reset, not reading on where the last range ended
+            range = initialRange;
+        }
+        long length = Math.min(range, size - position);
+        try (InputStream stream = reader.read(position, length)) {
+            buffer = stream.readAllBytes();
+        }
+        bufferStart = position;
+        fetched += buffer.length;
+        range = Math.min(range * 2, maxRange);
+        if (buffer.length == 0) {
+            // shorter than announced
+            size = position;
+            return false;
+        }
+        return true;
+    }
+
+    long fetched() {
+        return fetched;
+    }
+}
@@ -1,7 +1,10 @@
 package io.zeitmaschine.s3;
 
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 @Component
 @ConfigurationProperties(prefix = "s3")
@@ -12,6 +15,12 @@ public class S3Config {
     private String cacheBucket;
     private boolean webhook;
     private Access access;
+    // blocking minio client calls are offloaded to a dedicated scheduler of this size
+    private int threads = 32;
+    private int queuedTasks = 10000;
+    private WriteBehind writeBehind = new WriteBehind();
+    private Metadata metadata = new Metadata();
+    private Listing listing = new Listing();
 
     public String getHost() {
         return host;
@@ -53,6 +62,46 @@ public class S3Config {
         this.webhook = webhook;
     }
 
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getQueuedTasks() {
+        return queuedTasks;
+    }
+
+    public void setQueuedTasks(int queuedTasks) {
+        this.queuedTasks = queuedTasks;
+    }
+
+    public WriteBehind getWriteBehind() {
+        return writeBehind;
+    }
+
+    public void setWriteBehind(WriteBehind writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public Metadata getMetadata() {
+        return metadata;
+    }
+
+    public void setMetadata(Metadata metadata) {
+        this.metadata = metadata;
+    }
+
+    public Listing getListing() {
+        return listing;
+    }
+
+    public void setListing(Listing listing) {
+        this.listing = listing;
+    }
+
     // needs to be static, PITA exception otherwise
     public static class Access {
 
@@ -75,4 +124,144 @@ public class S3Config {
             this.secret = secret;
         }
     }
+
+    public static class WriteBehind {
+
+        // writes in parallel
+        private int concurrency = 4;
+        // pending writes, further writes are dropped
+        private int capacity = 1000;
+        // pending writes are still written on shutdown, for at most this long
+        private Duration drain = Duration.ofSeconds(30);
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public Duration getDrain() {
+            return drain;
+        }
+
+        public void setDrain(Duration drain) {
+            this.drain = drain;
+        }
+    }
+
+    public static class Metadata {
+
+        // read exif with ranged GETs instead of downloading the whole object
+        private boolean ranged = true;
+        // first range, doubled whenever more is needed up to max-range. Back to the first range after a skip.
+        private DataSize initialRange = DataSize.ofKilobytes(64);
+        private DataSize maxRange = DataSize.ofMegabytes(1);
+        // objects processed at once, processing is a mix of s3 round trips and parsing
+        private int parallelism = Runtime.getRuntime().availableProcessors() * 2;
+        // emit in listing order, otherwise as soon as processed
+        private boolean ordered = false;
+        // processed metadata written back to the store
+        private WriteBehind writeBack = new WriteBehind();
+        // object: as user metadata on the object, local: in a file at path
+        private String store = "object";
+        private String path = "metadata.mv.db";
+
+        public boolean isRanged() {
+            return ranged;
+        }
+
+        public void setRanged(boolean ranged) {
+            this.ranged = ranged;
+        }
+
+        public DataSize getInitialRange() {
+            return initialRange;
+        }
+
+        public void setInitialRange(DataSize initialRange) {
+            this.initialRange = initialRange;
+        }
+
+        public DataSize getMaxRange() {
+            return maxRange;
+        }
+
+        public void setMaxRange(DataSize maxRange) {
+            this.maxRange = maxRange;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public boolean isOrdered() {
+            return ordered;
+        }
+
+        public void setOrdered(boolean ordered) {
+            this.ordered = ordered;
+        }
+
+        public WriteBehind getWriteBack() {
+            return writeBack;
+        }
+
+        public void setWriteBack(WriteBehind writeBack) {
+            this.writeBack = writeBack;
+        }
+
+        public String getStore() {
+            return store;
+        }
+
+        public void setStore(String store) {
+            this.store = store;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+    }
+
+    public static class Listing {
+
+        // sub-prefixes ("folders") listed at once, a single listing of the whole prefix if 1
+        private int fanOut = 1;
+        // entries listed ahead per sub-prefix while the ones before are still consumed
+        private int prefetch = 10000;
+
+        public int getFanOut() {
+            return fanOut;
+        }
+
+        public void setFanOut(int fanOut) {
+            this.fanOut = fanOut;
+        }
+
+        public int getPrefetch() {
+            return prefetch;
+        }
+
+        public void setPrefetch(int prefetch) {
+            this.prefetch = prefetch;
+        }
+    }
 }
@@ -9,7 +9,7 @@ import java.util.function.Supplier;
 
 import org.springframework.core.io.Resource;
 
-public record S3Entry(String key, String contentType, long size, Supplier<Resource> resourceSupplier, Map<String, String> metaData) {
+public record S3Entry(String key, String contentType, long size, String etag, Instant lastModified, Supplier<Resource> resourceSupplier, RangeReader rangeReader, Map<String, String> metaData) {
 
     public static Builder builder(){
         return new Builder();
@@ -41,7 +41,10 @@ public record S3Entry(String key, String contentType, long size, Supplier<Resour
         private String key;
         private String contentType;
         private long size;
+        private String etag;
+        private Instant lastModified;
         private Supplier<Resource> resourceSupplier;
+        private RangeReader rangeReader;
         private Map<String, String> metaData = Map.of();
 
         public Builder key(String key) {
@@ -59,11 +62,26 @@ public record S3Entry(String key, String contentType, long size, Supplier<Resour
             return this;
         }
 
+        public Builder etag(String etag) {
+            this.etag = etag;
+            return this;
+        }
+
+        public Builder lastModified(Instant lastModified) {
+            this.lastModified = lastModified;
+            return this;
+        }
+
         public Builder resourceSupplier(Supplier<Resource> resourceSupplier) {
             this.resourceSupplier = resourceSupplier;
             return this;
         }
 
+        public Builder rangeReader(RangeReader rangeReader) {
+            this.rangeReader = rangeReader;
+            return this;
+        }
+
         public Builder metaData(Map<String, String> metaData) {
             this.metaData = metaData;
             return this;
@@ -74,14 +92,17 @@ public record S3Entry(String key, String contentType, long size, Supplier<Resour
                     .key(entry.key())
                     .size(entry.size())
                     .contentType(entry.contentType())
+                    .etag(entry.etag())
+                    .lastModified(entry.lastModified())
                     // Does this work?!
                     .resourceSupplier(entry.resourceSupplier())
+                    .rangeReader(entry.rangeReader())
                     .metaData(entry.metaData());
             return builder;
         }
 
         public S3Entry build() {
-            return new S3Entry(key, contentType, size, resourceSupplier, metaData);
+            return new S3Entry(key, contentType, size, etag, lastModified, resourceSupplier, rangeReader, metaData);
         }
     }
 
@@ -6,6 +6,8 @@ import org.springframework.core.io.Resource;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 public interface S3Repository {
     boolean health();
@@ -19,4 +21,14 @@ public interface S3Repository {
     void metaData(String key, Map<String, String> metaData, String contentType);
 
     Flux<S3Entry> get(String prefix);
+
+    // Lists in key order, only the objects after startAfter (all if null), repositories should do this server side.
+    default Flux<S3Entry> list(String prefix, String startAfter) {
+        return get(prefix).filter(entry -> startAfter == null || entry.key().compareTo(startAfter) > 0);
+    }
+
+    // Blocking work against the repository outside of it, e.g. reading an object's stream, belongs on here.
+    default Scheduler scheduler() {
+        return Schedulers.boundedElastic();
+    }
 }
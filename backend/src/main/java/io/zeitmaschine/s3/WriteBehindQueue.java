@@ -0,0 +1,106 @@
+package io.zeitmaschine.s3;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Runs writes to s3 which nobody waits for. At most {@link S3Config.WriteBehind#getCapacity()} writes are pending,
+ * writes beyond are dropped rather than piling up in memory.
+ */
+public class WriteBehindQueue {
+
+    private final static Logger LOG = LoggerFactory.getLogger(WriteBehindQueue.class.getName());
+
+    private final String name;
+    private final Duration drain;
+    private final ThreadPoolExecutor executor;
+    private final Counter written;
+    private final Counter failed;
+    private final Counter dropped;
+    private final Timer latency;
+
+    public WriteBehindQueue(String name, S3Config.WriteBehind config, MeterRegistry registry) {
+        this.name = name;
+        this.drain = config.getDrain();
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("write-behind-" + name + "-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(config.getConcurrency(), config.getConcurrency(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.getCapacity()), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+
+        Gauge.builder("s3.write.behind.pending", executor, e -> e.getQueue().size())
+                .tag("queue", name)
+                .register(registry);
+        this.written = counter(registry, name, "written");
+        this.failed = counter(registry, name, "failed");
+        this.dropped = counter(registry, name, "dropped");
+        // from submit until written, includes the time spent queued
+        this.latency = Timer.builder("s3.write.behind.latency")
+                .tag("queue", name)
+                .register(registry);
+    }
+
+    private static Counter counter(MeterRegistry registry, String name, String result) {
+        return Counter.builder("s3.write.behind")
+                .tag("queue", name)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * @return false if the write was dropped because the queue is full.
+     */
+    public boolean submit(String key, Runnable write) {
+        long submitted = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                try {
+                    write.run();
+                    written.increment();
+                } catch (Exception e) {
+                    failed.increment();
+                    LOG.error("Write behind of '{}' to {} failed.", key, name, e);
+                } finally {
+                    latency.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+            LOG.warn("Write behind queue {} is {}, dropped '{}'.", name, executor.isShutdown() ? "shut down" : "full", key);
+            return false;
+        }
+    }
+
+    /**
+     * Takes no more writes and waits for the pending ones, at most {@link S3Config.WriteBehind#getDrain()}.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(drain.toMillis(), TimeUnit.MILLISECONDS)) {
+                LOG.warn("Write behind queue {} not drained in {}, {} writes lost.", name, drain, executor.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int pending() {
+        return executor.getQueue().size() + executor.getActiveCount();
+    }
+}
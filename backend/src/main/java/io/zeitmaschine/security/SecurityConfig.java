@@ -21,7 +21,7 @@ public class SecurityConfig {
                 .csrf().disable()
                 .authorizeExchange()
                 .pathMatchers(HttpMethod.GET,"/image/**").authenticated()
-                .pathMatchers(HttpMethod.POST,"/zeitmaschine/**").authenticated()
+                .pathMatchers(HttpMethod.GET,"/gallery/**").authenticated()
                 .anyExchange().permitAll()
                 .and()
                 .oauth2ResourceServer()
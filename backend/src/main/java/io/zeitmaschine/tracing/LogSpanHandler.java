@@ -0,0 +1,37 @@
+package io.zeitmaschine.tracing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+
+/**
+ * Exports finished spans to the log, for a look at the traces without running zipkin. Enabled with
+ * {@code logging.level.io.zeitmaschine.tracing=debug}.
+ * <p>
+ * A brave handler rather than a sleuth reporter: sleuth only samples with a handler or the zipkin reporter around.
+ */
+@Component
+public class LogSpanHandler extends SpanHandler {
+
+    private final static Logger LOG = LoggerFactory.getLogger(LogSpanHandler.class.getName());
+
+    @Override
+    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        if (cause == Cause.FINISHED && LOG.isDebugEnabled()) {
+            // timestamps are epoch micros
+            LOG.debug("{} [trace {}, span {}, parent {}] {}ms {}{}",
+                    span.name(),
+                    span.traceId(),
+                    span.id(),
+                    span.parentId(),
+                    (span.finishTimestamp() - span.startTimestamp()) / 1000,
+                    span.tags(),
+                    span.error() != null ? " " + span.error() : "");
+        }
+        return true;
+    }
+}
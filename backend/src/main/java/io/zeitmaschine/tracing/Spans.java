@@ -0,0 +1,209 @@
+package io.zeitmaschine.tracing;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.sleuth.CurrentTraceContext;
+import org.springframework.cloud.sleuth.Span;
+import org.springframework.cloud.sleuth.TraceContext;
+import org.springframework.cloud.sleuth.Tracer;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Tags;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Spans across reactor chains. Reactor isn't instrumented on each operator (too expensive), the span travels in the
+ * subscriber context instead: children take their parent from there and put themselves in for what they call, e.g.
+ * a web client. Blocking code gets the span of the context in scope with {@link #wrap(ContextView, Callable)}.
+ * <p>
+ * Spans are only started within a trace, background work doesn't start a trace on every call. Without a tracer
+ * nothing is traced.
+ */
+@Component
+public class Spans {
+
+    public static final Spans NOOP = new Spans((Tracer) null);
+
+    private final Tracer tracer;
+
+    @Autowired
+    public Spans(ObjectProvider<Tracer> tracer) {
+        this(tracer.getIfAvailable());
+    }
+
+    public Spans(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * A child of the span in the subscriber context, ends with the call.
+     *
+     * @param service the remote service called, null if nothing remote.
+     */
+    public <T> Mono<T> child(String name, String service, Tags tags, Mono<T> call) {
+        if (tracer == null) {
+            return call;
+        }
+        return Mono.deferContextual(context -> {
+            Span span = child(parent(context), name, service, tags);
+            if (span == null) {
+                return call;
+            }
+            return call
+                    .doOnSuccess(value -> span.tag("outcome", value != null ? "success" : "empty"))
+                    .doOnError(span::error)
+                    // before the downstream sees the signal, a parent doesn't end before its children
+                    .doOnTerminate(span::end)
+                    .doOnCancel(span::end)
+                    .contextWrite(upstream -> with(upstream, span));
+        });
+    }
+
+    public <T> Flux<T> child(String name, String service, Tags tags, Flux<T> call) {
+        if (tracer == null) {
+            return call;
+        }
+        return Flux.deferContextual(context -> {
+            Span span = child(parent(context), name, service, tags);
+            if (span == null) {
+                return call;
+            }
+            return call
+                    .doOnComplete(() -> span.tag("outcome", "success"))
+                    .doOnError(span::error)
+                    .doOnTerminate(span::end)
+                    .doOnCancel(span::end)
+                    .contextWrite(upstream -> with(upstream, span));
+        });
+    }
+
+    /**
+     * A child of the span in scope, in scope itself while calling.
+     */
+    public <T> T child(String name, String service, Tags tags, Callable<T> call) throws Exception {
+        Span span = tracer != null ? child(tracer.currentSpan(), name, service, tags) : null;
+        if (span == null) {
+            return call.call();
+        }
+        try (Tracer.SpanInScope scope = tracer.withSpan(span)) {
+            T result = call.call();
+            span.tag("outcome", result != null ? "success" : "empty");
+            return result;
+        } catch (Exception e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Local work, e.g. parsing, as a child of the span in scope.
+     */
+    public <T> T child(String name, Tags tags, Supplier<T> work) {
+        Span span = tracer != null ? child(tracer.currentSpan(), name, null, tags) : null;
+        if (span == null) {
+            return work.get();
+        }
+        try (Tracer.SpanInScope scope = tracer.withSpan(span)) {
+            return work.get();
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * A new trace for work not started by a request, e.g. a batch of notifications.
+     */
+    public <T> Mono<T> root(String name, Tags tags, Mono<T> work) {
+        if (tracer == null) {
+            return work;
+        }
+        return Mono.defer(() -> {
+            Span.Builder builder = tracer.spanBuilder().setNoParent().name(name);
+            tags.forEach(tag -> builder.tag(tag.getKey(), tag.getValue()));
+            Span span = builder.start();
+            return work
+                    .doOnError(span::error)
+                    .doOnTerminate(span::end)
+                    .doOnCancel(span::end)
+                    .contextWrite(upstream -> with(upstream, span));
+        });
+    }
+
+    /**
+     * Blocking work of a reactor chain with the span of its subscriber in scope.
+     */
+    public <T> Callable<T> wrap(ContextView context, Callable<T> callable) {
+        Span span = tracer != null ? parent(context) : null;
+        if (span == null) {
+            return callable;
+        }
+        return () -> {
+            try (Tracer.SpanInScope scope = tracer.withSpan(span)) {
+                return callable.call();
+            }
+        };
+    }
+
+    public Runnable wrap(ContextView context, Runnable runnable) {
+        Span span = tracer != null ? parent(context) : null;
+        if (span == null) {
+            return runnable;
+        }
+        return () -> {
+            try (Tracer.SpanInScope scope = tracer.withSpan(span)) {
+                runnable.run();
+            }
+        };
+    }
+
+    /**
+     * Work handed to another thread with the span in scope right now.
+     */
+    public Runnable wrap(Runnable runnable) {
+        return tracer != null ? tracer.currentTraceContext().wrap(runnable) : runnable;
+    }
+
+    // the keys sleuth's instrumentation looks for
+    private static Context with(Context context, Span span) {
+        return context.put(Span.class, span).put(TraceContext.class, span.context());
+    }
+
+    // put there by us or the web filter, falls back to the span in scope
+    private Span parent(ContextView context) {
+        Span span = context.getOrDefault(Span.class, null);
+        if (span != null) {
+            return span;
+        }
+        TraceContext traceContext = context.getOrDefault(TraceContext.class, null);
+        if (traceContext != null) {
+            try (CurrentTraceContext.Scope scope = tracer.currentTraceContext().maybeScope(traceContext)) {
+                return tracer.currentSpan();
+            }
+        }
+        return tracer.currentSpan();
+    }
+
+    // unsampled traces have noop spans, no need to create children
+    private Span child(Span parent, String name, String service, Tags tags) {
+        if (parent == null || parent.isNoop()) {
+            return null;
+        }
+        Span.Builder builder = tracer.spanBuilder().setParent(parent.context()).name(name);
+        if (service != null) {
+            builder.kind(Span.Kind.CLIENT).remoteServiceName(service);
+        }
+        tags.forEach(tag -> builder.tag(tag.getKey(), tag.getValue()));
+        return builder.start();
+    }
+}
@@ -0,0 +1,95 @@
+package io.zeitmaschine.catalog;
+
+import static io.zeitmaschine.s3.Processor.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+
+import io.zeitmaschine.s3.S3Entry;
+
+class CatalogTest {
+
+    private static final String KEY = "2018/IMG_20181001_185137.jpg";
+
+    @Test
+    void changed() {
+        Catalog catalog = new Catalog((String) null);
+        S3Entry entry = entry(KEY, "etag1", Map.of(META_VERSION, META_VERSION_CURRENT));
+
+        assertThat(catalog.changed(entry), is(true));
+
+        catalog.update(entry);
+        assertThat(catalog.changed(entry), is(false));
+        assertThat(catalog.changed(entry(KEY, "etag2", Map.of(META_VERSION, META_VERSION_CURRENT))), is(true));
+        assertThat(catalog.changed(entry(KEY, "etag1", Map.of())), is(true));
+
+        catalog.remove(KEY);
+        assertThat(catalog.changed(entry), is(true));
+    }
+
+    @Test
+    void roundTrip() {
+        Catalog catalog = new Catalog((String) null);
+        catalog.update(entry(KEY, "etag1", Map.of(
+                META_VERSION, META_VERSION_CURRENT,
+                META_CREATION_DATE, "1543651200000",
+                META_LOCATION_LON, "8.5",
+                META_LOCATION_LAT, "47.3")));
+
+        S3Entry entry = catalog.entries().single().block().toS3Entry();
+        assertThat(entry.key(), is(KEY));
+        assertThat(entry.etag(), is("etag1"));
+        assertThat(entry.size(), is(1024L));
+        assertThat(entry.contentType(), is(MediaType.IMAGE_JPEG_VALUE));
+        assertThat(entry.created().getTime(), is(1543651200000L));
+        assertThat(entry.location(), is(new S3Entry.Location(8.5, 47.3)));
+        assertThat(catalog.changed(entry), is(false));
+    }
+
+    @Test
+    void stats() {
+        Catalog catalog = new Catalog((String) null);
+        catalog.update(entry("a.jpg", "etag1", Map.of(META_VERSION, META_VERSION_CURRENT, META_CREATION_DATE, "1543651200000",
+                META_LOCATION_LON, "8.5", META_LOCATION_LAT, "47.3")));
+        catalog.update(entry("b.jpg", "etag2", Map.of(META_VERSION, META_VERSION_CURRENT, META_CREATION_DATE, "1543737600000")));
+        catalog.update(entry("c.jpg", "etag3", Map.of()));
+
+        CatalogStats stats = catalog.stats();
+        assertThat(stats.getObjects(), is(3L));
+        assertThat(stats.getSize(), is(3072L));
+        assertThat(stats.getProcessed(), is(2L));
+        assertThat(stats.getLocated(), is(1L));
+        assertThat(stats.getOldest(), is(Instant.ofEpochMilli(1543651200000L)));
+        assertThat(stats.getNewest(), is(Instant.ofEpochMilli(1543737600000L)));
+    }
+
+    @Test
+    void persisted(@TempDir Path dir) {
+        String file = dir.resolve("catalog.mv.db").toString();
+        Catalog catalog = new Catalog(file);
+        S3Entry entry = entry(KEY, "etag1", Map.of(META_VERSION, META_VERSION_CURRENT));
+        catalog.update(entry);
+        catalog.destroy();
+
+        Catalog reopened = new Catalog(file);
+        assertThat(reopened.changed(entry), is(false));
+        reopened.destroy();
+    }
+
+    private static S3Entry entry(String key, String etag, Map<String, String> metaData) {
+        return S3Entry.builder()
+                .key(key)
+                .etag(etag)
+                .size(1024)
+                .contentType(MediaType.IMAGE_JPEG_VALUE)
+                .metaData(metaData)
+                .build();
+    }
+}
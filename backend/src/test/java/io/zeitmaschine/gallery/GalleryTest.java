@@ -0,0 +1,93 @@
+package io.zeitmaschine.gallery;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import io.zeitmaschine.index.Indexer;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class GalleryTest {
+
+    private Indexer indexer;
+    private Gallery gallery;
+
+    @BeforeEach
+    void setUp() {
+        indexer = mock(Indexer.class);
+        gallery = new Gallery(indexer);
+    }
+
+    @Test
+    void firstPage() {
+        // GIVEN
+        when(indexer.search(any())).thenReturn(Mono.just(response(
+                hit("b.jpg", "2018-06-14T21:47:34.000+0000", 1529012854000L),
+                hit("a.jpg", null, Long.MIN_VALUE))));
+
+        // WHEN
+        GalleryPage page = gallery.page(2, null).block();
+
+        // THEN
+        assertThat(page.images(), contains(
+                new GalleryPage.Image("b.jpg", "2018-06-14T21:47:34.000+0000"),
+                new GalleryPage.Image("a.jpg", null)));
+        assertThat(gallery.decode(page.next()), is(List.of(Long.MIN_VALUE, "a.jpg")));
+        assertThat(query(), not(hasKey("search_after")));
+    }
+
+    @Test
+    void nextPageAfterCursor() {
+        // GIVEN
+        when(indexer.search(any())).thenReturn(Mono.just(response(hit("c.jpg", null, Long.MIN_VALUE))));
+        String cursor = gallery.encode(List.of(1529012854000L, "b.jpg"));
+
+        // WHEN
+        GalleryPage page = gallery.page(2, cursor).block();
+
+        // THEN - continues after the cursor, a short page is the last one
+        assertThat(query().get("search_after"), is(List.of(1529012854000L, "b.jpg")));
+        assertThat(page.images(), contains(new GalleryPage.Image("c.jpg", null)));
+        assertThat(page.next(), nullValue());
+    }
+
+    @Test
+    void invalidCursor() {
+        StepVerifier.create(gallery.page(2, "bm90IGEgY3Vyc29y"))
+                .verifyError(IllegalArgumentException.class);
+        StepVerifier.create(gallery.page(2, gallery.encode(List.of("b.jpg", 1529012854000L))))
+                .verifyError(IllegalArgumentException.class);
+
+        verify(indexer, never()).search(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> query() {
+        ArgumentCaptor<Map<String, Object>> query = ArgumentCaptor.forClass(Map.class);
+        verify(indexer).search(query.capture());
+        return query.getValue();
+    }
+
+    private static String response(String... hits) {
+        return "{\"hits\":{\"hits\":[%s]}}".formatted(String.join(",", hits));
+    }
+
+    private static String hit(String name, String created, long sort) {
+        String source = created != null
+                ? "{\"name\":\"%s\",\"created\":\"%s\"}".formatted(name, created)
+                : "{\"name\":\"%s\",\"created\":null}".formatted(name);
+        return "{\"_source\":%s,\"sort\":[%d,\"%s\"]}".formatted(source, sort, name);
+    }
+}
@@ -0,0 +1,149 @@
+package io.zeitmaschine.image;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import io.zeitmaschine.s3.S3Entry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class ImageEndpointTest {
+
+    private static final String ETAG = "\"d41d8cd98f00b204e9800998ecf8427e-thumbnail\"";
+
+    private static final S3Entry ORIGINAL = S3Entry.builder()
+            .key("a.jpg")
+            .contentType("image/jpeg")
+            .size(10)
+            .etag("d41d8cd98f00b204e9800998ecf8427e")
+            .build();
+
+    private ImageService imageService;
+    private WebTestClient client;
+    private final AtomicBoolean bodyFetched = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() {
+        imageService = mock(ImageService.class);
+        client = WebTestClient.bindToController(new ImageEndpoint(imageService, new ImageConfig())).build();
+
+        when(imageService.image("a.jpg", Dimension.THUMBNAIL)).thenReturn(Mono.just(new ImageService.Tagged(ETAG, Flux.defer(() -> {
+            bodyFetched.set(true);
+            return Flux.just(DefaultDataBufferFactory.sharedInstance.wrap("thumbnail".getBytes()));
+        }))));
+        when(imageService.image("missing.jpg", Dimension.THUMBNAIL)).thenReturn(Mono.empty());
+        when(imageService.original("a.jpg")).thenReturn(Mono.just(ORIGINAL));
+        when(imageService.original(any(S3Entry.class), anyLong(), anyLong())).thenAnswer(invocation -> {
+            int offset = Math.toIntExact(invocation.getArgument(1, Long.class));
+            int length = Math.toIntExact(invocation.getArgument(2, Long.class));
+            return Flux.just(DefaultDataBufferFactory.sharedInstance.wrap("0123456789".substring(offset, offset + length).getBytes()));
+        });
+    }
+
+    @Test
+    void cacheHeaders() {
+        client.get().uri("/image/thumbnail?name=a.jpg")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", ETAG)
+                .expectHeader().valueEquals("Cache-Control", "max-age=31536000, private, immutable")
+                .expectBody(String.class).isEqualTo("thumbnail");
+    }
+
+    @Test
+    void notModified() {
+        client.get().uri("/image/thumbnail?name=a.jpg")
+                .header("If-None-Match", ETAG)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals("ETag", ETAG)
+                .expectBody().isEmpty();
+
+        assertThat(bodyFetched.get(), is(false));
+    }
+
+    @Test
+    void original() {
+        client.get().uri("/image/original?name=a.jpg")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("Accept-Ranges", "bytes")
+                .expectHeader().valueEquals("Cache-Control", "no-cache, private")
+                .expectHeader().contentLength(10)
+                .expectBody(String.class).isEqualTo("0123456789");
+
+        verify(imageService).original(ORIGINAL, 0, 10);
+    }
+
+    @Test
+    void originalRange() {
+        client.get().uri("/image/original?name=a.jpg")
+                .header("Range", "bytes=2-5")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals("Content-Range", "bytes 2-5/10")
+                .expectHeader().contentLength(4)
+                .expectBody(String.class).isEqualTo("2345");
+
+        verify(imageService).original(ORIGINAL, 2, 4);
+    }
+
+    @Test
+    void originalRangeNotSatisfiable() {
+        client.get().uri("/image/original?name=a.jpg")
+                .header("Range", "bytes=20-")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .expectHeader().valueEquals("Content-Range", "bytes */10");
+    }
+
+    @Test
+    void originalStaleIfRange() {
+        client.get().uri("/image/original?name=a.jpg")
+                .header("Range", "bytes=2-5")
+                .header("If-Range", "\"outdated-original\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("0123456789");
+    }
+
+    @Test
+    void originalEmpty() {
+        when(imageService.original("empty.jpg")).thenReturn(Mono.just(S3Entry.builder()
+                .key("empty.jpg")
+                .contentType("image/jpeg")
+                .size(0)
+                .etag("d41d8cd98f00b204e9800998ecf8427e")
+                .build()));
+
+        client.get().uri("/image/original?name=empty.jpg")
+                .header("Range", "bytes=0-")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentLength(0)
+                .expectBody().isEmpty();
+
+        verify(imageService, never()).original(any(S3Entry.class), anyLong(), anyLong());
+    }
+
+    @Test
+    void notFound() {
+        client.get().uri("/image/thumbnail?name=missing.jpg")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+}
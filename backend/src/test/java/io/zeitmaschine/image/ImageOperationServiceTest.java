@@ -1,6 +1,10 @@
 package io.zeitmaschine.image;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
@@ -15,6 +19,8 @@ import org.junit.jupiter.params.provider.ArgumentsSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.BodyInserters;
@@ -25,7 +31,10 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.zeitmaschine.TestImagesProvider;
+import io.zeitmaschine.s3.S3Repository;
+import reactor.core.scheduler.Schedulers;
 
 @Testcontainers
 public class ImageOperationServiceTest {
@@ -42,35 +51,42 @@ public class ImageOperationServiceTest {
 
     private ImageOperationService operationService;
     private ImageOperationConfig config;
+    private SimpleMeterRegistry registry;
 
     @BeforeEach
     void setUp() {
         String host = "http://" + container.getHost() + ":" + container.getFirstMappedPort();
         this.config = new ImageOperationConfig();
         config.setHost(host);
-        this.operationService = new ImageOperationService(config);
+        this.registry = new SimpleMeterRegistry();
+        S3Repository repository = mock(S3Repository.class);
+        when(repository.scheduler()).thenReturn(Schedulers.boundedElastic());
+        this.operationService = new ImageOperationService(config, repository, registry);
     }
 
     @ParameterizedTest
     @ArgumentsSource(TestImagesProvider.class)
     public void resizeOperation(Resource image) throws IOException {
-        Resource thumbResource = operationService.resize(image, Dimension.SMALL).block();
+        DataBuffer thumbBuffer = DataBufferUtils.join(operationService.resize(image, Dimension.SMALL)).block();
 
-        BufferedImage thumbnail = ImageIO.read(thumbResource.getInputStream());
+        BufferedImage thumbnail = ImageIO.read(thumbBuffer.asInputStream(true));
 
         assertThat(thumbnail.getWidth(), CoreMatchers.is(Dimension.SMALL.getSize()));
+        assertThat(registry.get("imaginary.calls").tags("dimension", "small", "outcome", "success").timer().count(), is(1L));
+        assertThat(registry.get("imaginary.bytes").tags("dimension", "small", "direction", "sent").counter().count(), is((double) image.contentLength()));
+        assertThat(registry.get("imaginary.bytes").tags("dimension", "small", "direction", "received").counter().count(), greaterThan(0.0));
     }
 
     // InputStream made some trouble.. Keep in mind that the InputStreamResource is only usable once.
     // Update: this does indeed not work, using ByteArrayResource in productive code:
-    // see: ImageService#getImageByDimension and S3Repository#get
+    // see: ImageService#image and S3Repository#get
     @ParameterizedTest
     @ArgumentsSource(TestImagesProvider.class)
     public void inputStreamResource(Resource image) throws IOException {
 
-        Resource thumbResource = operationService.resize(image, Dimension.SMALL).block();
+        DataBuffer thumbBuffer = DataBufferUtils.join(operationService.resize(image, Dimension.SMALL)).block();
 
-        BufferedImage thumbnail = ImageIO.read(thumbResource.getInputStream());
+        BufferedImage thumbnail = ImageIO.read(thumbBuffer.asInputStream(true));
 
         assertThat(thumbnail.getWidth(), CoreMatchers.is(Dimension.SMALL.getSize()));
     }
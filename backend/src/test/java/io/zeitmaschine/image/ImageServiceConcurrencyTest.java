@@ -0,0 +1,133 @@
+package io.zeitmaschine.image;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.GetObjectResponse;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.zeitmaschine.s3.MinioRepository;
+import io.zeitmaschine.s3.S3Config;
+import okhttp3.Headers;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Concurrent thumbnail requests served from the cache bucket. The requests are subscribed from a single thread, like
+ * a netty event loop, the s3 calls must neither run on it nor exceed the threads of the s3 scheduler. The latency
+ * percentiles are reported, not asserted, GalleryLoadIT covers the image path against real services.
+ */
+class ImageServiceConcurrencyTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ImageServiceConcurrencyTest.class.getName());
+
+    private static final int REQUESTS = 256;
+    private static final int THREADS = 8;
+
+    private final Set<String> threads = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger maxCalls = new AtomicInteger();
+
+    @Test
+    void concurrentThumbnails() throws Exception {
+        // GIVEN
+        byte[] thumbnail = new byte[16 * 1024];
+        Headers headers = Headers.of(
+                "Content-Type", "image/jpeg",
+                "Content-Length", String.valueOf(thumbnail.length),
+                "ETag", "\"d41d8cd98f00b204e9800998ecf8427e\"",
+                "Last-Modified", "Tue, 15 Nov 1994 12:45:26 GMT");
+
+        MinioClient client = mock(MinioClient.class);
+        when(client.statObject(any())).thenAnswer(invocation -> call(() -> {
+            StatObjectArgs args = invocation.getArgument(0);
+            return new StatObjectResponse(headers, args.bucket(), null, args.object());
+        }));
+        when(client.getObject(any())).thenAnswer(invocation -> call(() ->
+                new GetObjectResponse(headers, "media-cache", null, "thumbnail", new ByteArrayInputStream(thumbnail))));
+
+        S3Config config = new S3Config();
+        config.setBucket("media");
+        config.setCacheBucket("media-cache");
+        config.setAccess(new S3Config.Access());
+        config.setThreads(THREADS);
+
+        // no in-memory tier, every request goes to s3
+        ImageConfig imageConfig = new ImageConfig();
+        imageConfig.setCache(Map.of());
+        RenditionCache renditions = new RenditionCache(imageConfig, new SimpleMeterRegistry());
+
+        MinioRepository repository = new MinioRepository(config, client, new SimpleMeterRegistry());
+        ImageService imageService = new ImageService(repository, config, imageConfig, mock(ImageOperationService.class), renditions, new SimpleMeterRegistry());
+
+        Scheduler eventLoop = Schedulers.newSingle("event-loop");
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+
+        // WHEN
+        eventLoop.schedule(() -> {
+            for (int i = 0; i < REQUESTS; i++) {
+                long started = System.nanoTime();
+                DataBufferUtils.join(imageService.image("image-" + i + ".jpg", Dimension.THUMBNAIL).flatMapMany(ImageService.Tagged::content))
+                        .doOnNext(DataBufferUtils::release)
+                        .doFinally(signal -> {
+                            latencies.add(System.nanoTime() - started);
+                            done.countDown();
+                        })
+                        .subscribe(buffer -> {}, errors::add);
+            }
+        });
+
+        // THEN - the stats and gets of every request, all of them on the s3 scheduler
+        assertThat(done.await(30, TimeUnit.SECONDS), is(true));
+        eventLoop.dispose();
+        repository.destroy();
+
+        assertThat(errors, empty());
+        assertThat(threads, everyItem(startsWith("s3-")));
+        assertThat(maxCalls.get(), lessThanOrEqualTo(THREADS));
+
+        List<Long> sorted = latencies.stream().sorted().toList();
+        LOG.info("{} concurrent thumbnails on {} s3 threads, latency p50 {}ms, p99 {}ms.", REQUESTS, THREADS,
+                percentile(sorted, 0.5).toMillis(), percentile(sorted, 0.99).toMillis());
+    }
+
+    private static Duration percentile(List<Long> sorted, double percentile) {
+        return Duration.ofNanos(sorted.get((int) Math.ceil(percentile * sorted.size()) - 1));
+    }
+
+    // a slow s3 call, recording where and how many run at once
+    private <T> T call(Callable<T> call) throws Exception {
+        threads.add(Thread.currentThread().getName());
+        maxCalls.accumulateAndGet(calls.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(5);
+            return call.call();
+        } finally {
+            calls.decrementAndGet();
+        }
+    }
+}
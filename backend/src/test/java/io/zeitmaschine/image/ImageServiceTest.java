@@ -0,0 +1,197 @@
+package io.zeitmaschine.image;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.zeitmaschine.s3.S3Config;
+import io.zeitmaschine.s3.S3Entry;
+import io.zeitmaschine.s3.S3Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+class ImageServiceTest {
+
+    private static final byte[] THUMBNAIL = "thumbnail".getBytes();
+
+    private S3Config config;
+    private S3Repository repository;
+    private ImageOperationService operationService;
+    private ImageService imageService;
+
+    @BeforeEach
+    void setUp() {
+        config = new S3Config();
+        config.setBucket("media");
+        config.setCacheBucket("media-cache");
+
+        ImageConfig imageConfig = new ImageConfig();
+        imageConfig.setCache(Map.of());
+
+        repository = mock(S3Repository.class);
+        operationService = mock(ImageOperationService.class);
+        imageService = new ImageService(repository, config, imageConfig, operationService, new RenditionCache(imageConfig, new SimpleMeterRegistry()), new SimpleMeterRegistry());
+
+        when(repository.scheduler()).thenReturn(Schedulers.boundedElastic());
+        when(repository.get(eq("media-cache"), anyString())).thenReturn(Mono.empty());
+        when(repository.get("media", "a.jpg")).thenReturn(Mono.just(S3Entry.builder()
+                .key("a.jpg")
+                .resourceSupplier(() -> new ByteArrayResource("original".getBytes()))
+                .build()));
+    }
+
+    @Test
+    void concurrentMissesResizeOnce() {
+        // resize is slow enough for all requests to miss the cache bucket
+        when(operationService.resize(any(), eq(Dimension.THUMBNAIL)))
+                .thenReturn(Mono.delay(Duration.ofMillis(200)).thenMany(thumbnail()));
+
+        List<String> thumbnails = Flux.range(0, 10)
+                .flatMap(i -> read(imageService.image("a.jpg", Dimension.THUMBNAIL)))
+                .collectList()
+                .block();
+
+        assertThat(thumbnails, hasSize(10));
+        assertThat(thumbnails, everyItem(is("thumbnail")));
+        verify(operationService, times(1)).resize(any(), eq(Dimension.THUMBNAIL));
+        // written behind
+        verify(repository, timeout(1000).times(1)).put(eq("media-cache"), anyString(), any(), anyString());
+    }
+
+    @Test
+    void failedFlightRetried() {
+        when(operationService.resize(any(), eq(Dimension.THUMBNAIL)))
+                .thenReturn(Flux.error(new RuntimeException("imaginary down")))
+                .thenReturn(thumbnail());
+
+        Mono<String> thumbnail = read(imageService.image("a.jpg", Dimension.THUMBNAIL));
+
+        assertThat(thumbnail.onErrorReturn("failed").block(), is("failed"));
+        assertThat(thumbnail.block(), is("thumbnail"));
+    }
+
+    @Test
+    void renditionReleased() throws InterruptedException {
+        NettyDataBufferFactory pooled = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+        List<DataBuffer> received = List.of(pooled.wrap("thumb".getBytes()), pooled.wrap("nail".getBytes()));
+        when(operationService.resize(any(), eq(Dimension.MEDIUM)))
+                .thenReturn(Mono.delay(Duration.ofMillis(200)).thenMany(Flux.fromIterable(received)));
+        // the upload consumes its own slice
+        doAnswer(invocation -> {
+            try (InputStream stream = invocation.getArgument(2, Resource.class).getInputStream()) {
+                assertThat(new String(stream.readAllBytes()), is("thumbnail"));
+            }
+            return null;
+        }).when(repository).put(eq("media-cache"), anyString(), any(), anyString());
+
+        List<String> renditions = Flux.range(0, 3)
+                .flatMap(i -> read(imageService.image("a.jpg", Dimension.MEDIUM)))
+                .collectList()
+                .block();
+
+        assertThat(renditions, everyItem(is("thumbnail")));
+        // the flight and the cache write release their slices after the waiters completed
+        long deadline = System.currentTimeMillis() + 1000;
+        while (refCnt(received) > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(refCnt(received), is(0));
+    }
+
+    @Test
+    void memoryHitWithoutS3() {
+        // GIVEN
+        ImageConfig imageConfig = new ImageConfig();
+        imageConfig.setCache(Map.of(Dimension.THUMBNAIL, DataSize.ofKilobytes(1)));
+        imageService = new ImageService(repository, config, imageConfig, operationService, new RenditionCache(imageConfig, new SimpleMeterRegistry()), new SimpleMeterRegistry());
+        when(repository.get("media", "b.jpg")).thenReturn(Mono.just(S3Entry.builder()
+                .key("b.jpg")
+                .etag("d41d8cd98f00b204e9800998ecf8427e")
+                .resourceSupplier(() -> new ByteArrayResource("original".getBytes()))
+                .build()));
+        when(operationService.resize(any(), eq(Dimension.THUMBNAIL))).thenReturn(thumbnail());
+
+        // WHEN
+        assertThat(read(imageService.image("b.jpg", Dimension.THUMBNAIL)).block(), is("thumbnail"));
+        ImageService.Tagged hit = imageService.image("b.jpg", Dimension.THUMBNAIL).block();
+
+        // THEN - the original was only asked for once, on the miss
+        assertThat(hit.etag(), is("\"d41d8cd98f00b204e9800998ecf8427e-thumbnail\""));
+        assertThat(read(Mono.just(hit)).block(), is("thumbnail"));
+        verify(repository, times(1)).get("media", "b.jpg");
+    }
+
+    @Test
+    void localOriginal(@TempDir Path originals) throws IOException {
+        Instant synced = Instant.parse("2021-06-14T21:47:34Z");
+        Files.write(originals.resolve("a.jpg"), "original".getBytes());
+        Files.setLastModifiedTime(originals.resolve("a.jpg"), FileTime.from(synced));
+        ImageConfig imageConfig = new ImageConfig();
+        imageConfig.setOriginals(originals.toString());
+        imageService = new ImageService(repository, config, imageConfig, operationService, new RenditionCache(imageConfig, new SimpleMeterRegistry()), new SimpleMeterRegistry());
+
+        assertThat(imageService.local(original("a.jpg", 8, synced)).isPresent(), is(true));
+        // outdated copy
+        assertThat(imageService.local(original("a.jpg", 9, synced)).isPresent(), is(false));
+        // replaced with an original of the same size
+        assertThat(imageService.local(original("a.jpg", 8, synced.plusSeconds(60))).isPresent(), is(false));
+        assertThat(imageService.local(original("../a.jpg", 8, synced)).isPresent(), is(false));
+        assertThat(imageService.local(original("b.jpg", 8, synced)).isPresent(), is(false));
+    }
+
+    private static S3Entry original(String key, long size, Instant lastModified) {
+        return S3Entry.builder().key(key).size(size).lastModified(lastModified).build();
+    }
+
+    private static int refCnt(List<DataBuffer> buffers) {
+        return buffers.stream().mapToInt(buffer -> ((NettyDataBuffer) buffer).getNativeBuffer().refCnt()).sum();
+    }
+
+    private static Flux<DataBuffer> thumbnail() {
+        return Flux.defer(() -> Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(THUMBNAIL)));
+    }
+
+    private static Mono<String> read(Mono<ImageService.Tagged> image) {
+        return DataBufferUtils.join(image.flatMapMany(ImageService.Tagged::content)).map(buffer -> {
+            String content = buffer.toString(StandardCharsets.UTF_8);
+            DataBufferUtils.release(buffer);
+            return content;
+        });
+    }
+}
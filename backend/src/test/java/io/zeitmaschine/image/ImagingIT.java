@@ -175,8 +175,7 @@ public class ImagingIT {
                 .header(HttpHeaders.CONTENT_TYPE, MediaType.IMAGE_JPEG_VALUE)
                 .accept(MediaType.IMAGE_JPEG)
                 .exchange()
-                //.expectStatus().is4xxClientError(); this is correcter.
-                .expectStatus().is5xxServerError();
+                .expectStatus().isNotFound();
     }
 
 
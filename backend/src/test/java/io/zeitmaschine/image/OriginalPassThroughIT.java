@@ -0,0 +1,166 @@
+package io.zeitmaschine.image;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.elasticsearch.ElasticsearchContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.zeitmaschine.s3.S3Config;
+import io.zeitmaschine.s3.S3Entry;
+import io.zeitmaschine.s3.S3Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Compares serving an original by passing it through from s3 against the round trip over imaginary the originals
+ * took before. Run with the integration-tests profile, the numbers are logged.
+ */
+@SpringBootTest
+@ContextConfiguration(initializers = { OriginalPassThroughIT.Initializer.class })
+@Testcontainers
+public class OriginalPassThroughIT {
+
+    private final static Logger LOG = LoggerFactory.getLogger(OriginalPassThroughIT.class.getName());
+
+    private static final String TEST_IMAGE_NAME = "IMG_20181001_185137.jpg";
+    private static final int ROUNDS = 50;
+
+    @Autowired
+    private S3Config config;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private ImageOperationService operationService;
+
+    @Autowired
+    private S3Repository repository;
+
+    private static final String MINIO_CONTAINER = "minio/minio:RELEASE.2021-11-05T09-16-26Z";
+    private static final int MINIO_PORT = 9000;
+
+    @Container
+    private static GenericContainer minioContainer = new GenericContainer(DockerImageName.parse(MINIO_CONTAINER))
+            .withEnv(Map.of(
+                    "MINIO_ACCESS_KEY", "test",
+                    "MINIO_SECRET_KEY", "testtest"))
+            .withCommand("server /data")
+            .withExposedPorts(MINIO_PORT);
+
+    private static final String ELASTICSEARCH_VERSION = "7.15.2";
+    private static final String ELASTIC_CONTAINER = "docker.elastic.co/elasticsearch/elasticsearch";
+    private static final Integer ELASTIC_PORT = 9200;
+
+    @Container
+    private static GenericContainer elasticContainer = new ElasticsearchContainer(
+            DockerImageName
+                    .parse(ELASTIC_CONTAINER)
+                    .withTag(ELASTICSEARCH_VERSION))
+            .withEnv(Map.of("discovery.type", "single-node"))
+            .withExposedPorts(ELASTIC_PORT);
+
+    private static final int IMAGINARY_PORT = 8088;
+
+    @Container
+    private static GenericContainer imaginaryContainer = new GenericContainer(DockerImageName.parse("h2non/imaginary:1.2.4"))
+            .withEnv("PORT", String.valueOf(IMAGINARY_PORT))
+            .withExposedPorts(IMAGINARY_PORT);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MinioClient minioClient = MinioClient.builder()
+                .endpoint(config.getHost())
+                .credentials(config.getAccess().getKey(), config.getAccess().getSecret()).build();
+
+        Thread.sleep(3000); // TODO: poll and parse /.health endpoint instead!
+
+        Resource image = new ClassPathResource("images/" + TEST_IMAGE_NAME);
+        minioClient.putObject(PutObjectArgs.builder()
+                .bucket(config.getBucket())
+                .object(TEST_IMAGE_NAME)
+                .stream(image.getInputStream(), image.contentLength(), -1)
+                .contentType(MediaType.IMAGE_JPEG_VALUE)
+                .build());
+    }
+
+    @Test
+    void passThroughVsResize() {
+        S3Entry original = imageService.original(TEST_IMAGE_NAME).block();
+
+        long[] passThrough = measure(() -> imageService.original(original, 0, original.size()));
+        long[] resize = measure(() -> repository.get(config.getBucket(), TEST_IMAGE_NAME)
+                .flatMapMany(entry -> operationService.resize(entry.resourceSupplier().get(), Dimension.ORIGINAL)));
+
+        LOG.info("{} rounds of '{}' ({} bytes), pass through: p50 {}ms, p99 {}ms. resize round trip: p50 {}ms, p99 {}ms.",
+                ROUNDS, TEST_IMAGE_NAME, original.size(),
+                percentile(passThrough, 50), percentile(passThrough, 99),
+                percentile(resize, 50), percentile(resize, 99));
+
+        // the range is read from s3 as it is
+        assertThat(size(imageService.original(original, 100, 1000)), is(1000L));
+    }
+
+    private static long[] measure(Supplier<Flux<DataBuffer>> request) {
+        // warm up
+        size(request.get());
+        long[] latencies = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            size(request.get());
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static long size(Flux<DataBuffer> body) {
+        return body.map(buffer -> {
+                    long size = buffer.readableByteCount();
+                    DataBufferUtils.release(buffer);
+                    return size;
+                })
+                .reduce(0L, Long::sum)
+                .block();
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        return TimeUnit.NANOSECONDS.toMillis(sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)]);
+    }
+
+    static class Initializer
+            implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+        public void initialize(ConfigurableApplicationContext configurableApplicationContext) {
+            TestPropertyValues.of(
+                    "s3.host=" + "http://" + minioContainer.getHost() + ":" + minioContainer.getMappedPort(MINIO_PORT),
+                    "elasticsearch.host=" + "http://" + elasticContainer.getHost() + ":" + elasticContainer.getMappedPort(ELASTIC_PORT),
+                    "imaginary.host=" + "http://" + imaginaryContainer.getHost() + ":" + imaginaryContainer.getMappedPort(IMAGINARY_PORT)
+            ).applyTo(configurableApplicationContext.getEnvironment());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.zeitmaschine.image;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RenditionCacheTest {
+
+    @Test
+    void hitAndMiss() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RenditionCache cache = cache(registry, Map.of(Dimension.THUMBNAIL, DataSize.ofKilobytes(1)));
+
+        cache.put("a.jpg", Dimension.THUMBNAIL, "etag", new byte[10]);
+
+        assertThat(cache.get("a.jpg", Dimension.THUMBNAIL).isPresent(), is(true));
+        assertThat(cache.get("b.jpg", Dimension.THUMBNAIL).isPresent(), is(false));
+        assertThat(registry.get("cache.gets").tags("cache", "renditions", "dimension", "thumbnail", "result", "hit").functionCounter().count(), is(1.0));
+        assertThat(registry.get("cache.gets").tags("cache", "renditions", "dimension", "thumbnail", "result", "miss").functionCounter().count(), is(1.0));
+    }
+
+    @Test
+    void evictedOverBudget() {
+        RenditionCache cache = cache(new SimpleMeterRegistry(), Map.of(Dimension.THUMBNAIL, DataSize.ofBytes(100)));
+
+        cache.put("a.jpg", Dimension.THUMBNAIL, "etag", new byte[60]);
+        cache.put("b.jpg", Dimension.THUMBNAIL, "etag", new byte[60]);
+        cache.cleanUp();
+
+        long cached = cache.get("a.jpg", Dimension.THUMBNAIL).stream().count()
+                + cache.get("b.jpg", Dimension.THUMBNAIL).stream().count();
+        assertThat(cached, is(1L));
+    }
+
+    @Test
+    void noBudgetNoCache() {
+        RenditionCache cache = cache(new SimpleMeterRegistry(), Map.of(Dimension.THUMBNAIL, DataSize.ofKilobytes(1)));
+
+        cache.put("a.jpg", Dimension.MEDIUM, "etag", new byte[10]);
+
+        assertThat(cache.enabled(Dimension.MEDIUM), is(false));
+        assertThat(cache.get("a.jpg", Dimension.MEDIUM).isPresent(), is(false));
+    }
+
+    private static RenditionCache cache(SimpleMeterRegistry registry, Map<Dimension, DataSize> budgets) {
+        ImageConfig config = new ImageConfig();
+        config.setCache(budgets);
+        return new RenditionCache(config, registry);
+    }
+}
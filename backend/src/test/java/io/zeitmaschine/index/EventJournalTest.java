@@ -0,0 +1,105 @@
+package io.zeitmaschine.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+class EventJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayedAfterReopen() throws IOException {
+        // GIVEN
+        EventJournal journal = new EventJournal(dir, DataSize.ofKilobytes(64));
+        journal.append(List.of(event("2018/a.jpg", false), event("2018/b.jpg", true)));
+
+        // WHEN
+        List<WebhookIngest.Event> replayed = new EventJournal(dir, DataSize.ofKilobytes(64)).replay();
+
+        // THEN
+        assertThat(replayed.stream().map(WebhookIngest.Event::key).toList(), contains("2018/a.jpg", "2018/b.jpg"));
+        assertThat(replayed.get(1).removed(), is(true));
+    }
+
+    @Test
+    void appendedAfterReopen() throws IOException {
+        // GIVEN
+        new EventJournal(dir, DataSize.ofKilobytes(64)).append(List.of(event("a", false)));
+
+        // WHEN
+        EventJournal reopened = new EventJournal(dir, DataSize.ofKilobytes(64));
+        reopened.append(List.of(event("b", false)));
+
+        // THEN
+        assertThat(keys(reopened.replay()), contains("a", "b"));
+    }
+
+    @Test
+    void committedNotReplayed() throws IOException {
+        // GIVEN
+        EventJournal journal = new EventJournal(dir, DataSize.ofKilobytes(64));
+        List<WebhookIngest.Event> appended = journal.append(List.of(event("a", false), event("b", false), event("c", false)));
+
+        // WHEN
+        journal.commit(appended.get(1).position());
+
+        // THEN
+        assertThat(keys(new EventJournal(dir, DataSize.ofKilobytes(64)).replay()), contains("c"));
+    }
+
+    @Test
+    void segmentsRolledAndCompacted() throws IOException {
+        // GIVEN - 3 records of 14 bytes per segment
+        EventJournal journal = new EventJournal(dir, DataSize.ofBytes(48));
+        List<WebhookIngest.Event> appended = journal.append(List.of(
+                event("aaaaa", false), event("bbbbb", false), event("ccccc", false),
+                event("ddddd", false), event("eeeee", false), event("fffff", false),
+                event("ggggg", false)));
+        assertThat(journal.segments(), contains(0L, 1L, 2L));
+
+        // WHEN
+        journal.commit(appended.get(4).position());
+
+        // THEN
+        assertThat(journal.segments(), contains(1L, 2L));
+        assertThat(keys(new EventJournal(dir, DataSize.ofBytes(48)).replay()), contains("fffff", "ggggg"));
+    }
+
+    @Test
+    void tornRecordIgnored() throws IOException {
+        // GIVEN
+        EventJournal journal = new EventJournal(dir, DataSize.ofKilobytes(64));
+        List<WebhookIngest.Event> appended = journal.append(List.of(event("a", false), event("b", false)));
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve("segment-%019d.log".formatted(0)).toFile(), "rw")) {
+            // corrupt the key of the second record
+            file.seek(appended.get(1).position() - 1);
+            file.write('x');
+        }
+
+        // WHEN
+        EventJournal reopened = new EventJournal(dir, DataSize.ofKilobytes(64));
+
+        // THEN - the next record replaces the torn one
+        assertThat(keys(reopened.replay()), contains("a"));
+        reopened.append(List.of(event("c", false)));
+        assertThat(keys(reopened.replay()), contains("a", "c"));
+    }
+
+    private static List<String> keys(List<WebhookIngest.Event> events) {
+        return events.stream().map(WebhookIngest.Event::key).toList();
+    }
+
+    private static WebhookIngest.Event event(String key, boolean removed) {
+        return new WebhookIngest.Event(key, removed);
+    }
+}
@@ -40,7 +40,9 @@ public class IndexEndpointTest {
                 .size(123)
                 .resourceSupplier(() -> new ClassPathResource("images/IMG_20161208_024708.jpg"))
                 .build();
-        when(repository.get(prefix)).thenReturn(Flux.just(entry));
+        when(repository.list(prefix, null)).thenReturn(Flux.just(entry));
+        when(indexer.index(any(Flux.class))).thenAnswer(i -> i.<Flux<S3Entry>>getArgument(0)
+                .map(s3Entry -> new IndexResult(s3Entry.key(), 201, null)));
 
         // WHEN
         webClient.post()
@@ -51,7 +53,7 @@ public class IndexEndpointTest {
                 .expectStatus().is2xxSuccessful();
 
         // THEN
-        verify(repository, times(1)).get(eq(prefix));
-        verify(indexer, times(1)).index(any(S3Entry.class));
+        verify(repository, times(1)).list(eq(prefix), isNull());
+        verify(indexer, times(1)).index(any(Flux.class));
     }
 }
@@ -0,0 +1,219 @@
+package io.zeitmaschine.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.reactive.MockClientHttpRequest;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zeitmaschine.s3.S3Entry;
+import io.zeitmaschine.tracing.Spans;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class IndexerBulkTest {
+
+    private IndexerConfig config;
+    private List<String> requests;
+    private Queue<String> responses;
+
+    @BeforeEach
+    void setUp() {
+        config = new IndexerConfig();
+        config.setHost("http://elastic");
+        config.setIndex("zeitmaschine");
+        config.setResource("image");
+        config.getBulk().setRetryBackoff(Duration.ofMillis(1));
+
+        requests = new ArrayList<>();
+        responses = new LinkedList<>();
+    }
+
+    @Test
+    void batchedByActions() {
+        // GIVEN
+        config.getBulk().setActions(2);
+        Indexer indexer = new Indexer(config, stubbedElastic(), new SimpleMeterRegistry(), Spans.NOOP);
+
+        // WHEN - THEN
+        StepVerifier.create(indexer.index(entries("a", "b", "c", "d", "e")))
+                .expectNextCount(5)
+                .verifyComplete();
+
+        assertThat(requests, hasSize(3));
+        assertThat(requests.get(0), containsString("\"name\":\"a\""));
+        assertThat(requests.get(0), containsString("\"name\":\"b\""));
+        assertThat(requests.get(2), containsString("\"name\":\"e\""));
+    }
+
+    @Test
+    void demandBoundedByRequestsInFlight() {
+        // GIVEN - elastic never answers
+        config.getBulk().setActions(10);
+        Indexer indexer = new Indexer(config, WebClient.builder().exchangeFunction(request -> Mono.never()), new SimpleMeterRegistry(), Spans.NOOP);
+        AtomicLong requested = new AtomicLong();
+        Flux<S3Entry> entries = Flux.range(0, 100_000)
+                .map(i -> S3Entry.builder().key("key-" + i).contentType(MediaType.IMAGE_JPEG_VALUE).build())
+                .doOnRequest(requested::addAndGet);
+
+        // WHEN
+        Disposable indexing = indexer.index(entries).subscribe();
+
+        // THEN - only the batches in flight and the next one are pulled, not the whole listing
+        assertThat(requested.get(), lessThanOrEqualTo(10L * (config.getConcurrency() + 2)));
+        indexing.dispose();
+    }
+
+    @Test
+    void flushedAtInterval() {
+        // GIVEN - the entries trickle in, never filling a batch
+        config.getBulk().setFlushInterval(Duration.ofMillis(100));
+        Indexer indexer = new Indexer(config, stubbedElastic(), new SimpleMeterRegistry(), Spans.NOOP);
+
+        // WHEN - THEN
+        StepVerifier.create(indexer.index(entries("a").concatWith(Flux.never())))
+                .expectNextCount(1)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(requests, hasSize(1));
+        assertThat(requests.get(0), containsString("\"name\":\"a\""));
+    }
+
+    @Test
+    void onlyFailedItemsRetried() {
+        // GIVEN
+        responses.add("{\"errors\":true,\"items\":[" +
+                "{\"index\":{\"status\":201}}," +
+                "{\"index\":{\"status\":429,\"error\":{\"type\":\"es_rejected_execution_exception\"}}}," +
+                "{\"index\":{\"status\":400,\"error\":{\"type\":\"mapper_parsing_exception\"}}}]}");
+        Indexer indexer = new Indexer(config, stubbedElastic(), new SimpleMeterRegistry(), Spans.NOOP);
+
+        // WHEN
+        List<IndexResult> results = indexer.index(entries("a", "b", "c")).collectList().block();
+
+        // THEN
+        assertThat(requests, hasSize(2));
+        assertThat(requests.get(1), containsString("\"name\":\"b\""));
+        assertThat(requests.get(1), not(containsString("\"name\":\"a\"")));
+        assertThat(requests.get(1), not(containsString("\"name\":\"c\"")));
+
+        assertThat(results, hasSize(3));
+        assertThat(results.stream().filter(IndexResult::successful).map(IndexResult::key).toList(), containsInAnyOrder("a", "b"));
+        IndexResult failed = results.stream().filter(result -> !result.successful()).findFirst().orElseThrow();
+        assertThat(failed.key(), is("c"));
+        assertThat(failed.status(), is(400));
+    }
+
+    @Test
+    void idDerivedFromKey() {
+        // GIVEN
+        Indexer indexer = new Indexer(config, stubbedElastic(), new SimpleMeterRegistry(), Spans.NOOP);
+
+        // WHEN
+        indexer.index(entries("2021/a.jpg")).blockLast();
+        indexer.index(entries("2021/a.jpg")).blockLast();
+
+        // THEN - same document replaced
+        String action = "{\"index\":{\"_id\":\"" + Indexer.documentId("2021/a.jpg") + "\"}}";
+        assertThat(requests, hasSize(2));
+        assertThat(requests.get(0), startsWith(action));
+        assertThat(requests.get(1), startsWith(action));
+        assertThat(Indexer.documentId("2021/a.jpg"), not(Indexer.documentId("2021/b.jpg")));
+    }
+
+    @Test
+    void dedup() {
+        // GIVEN
+        responses.add("{\"aggregations\":{\"duplicates\":{\"buckets\":[" +
+                "{\"key\":\"a\",\"doc_count\":3,\"latest\":{\"hits\":{\"hits\":[{\"_source\":{\"name\":\"a\",\"created\":null}}]}}}]}}}");
+        responses.add("{\"errors\":false}");
+        responses.add("{\"deleted\":2}");
+        responses.add("{\"aggregations\":{\"duplicates\":{\"buckets\":[]}}}");
+        Indexer indexer = new Indexer(config, stubbedElastic(), new SimpleMeterRegistry(), Spans.NOOP);
+
+        // WHEN - THEN
+        StepVerifier.create(indexer.dedup())
+                .expectNext(2L)
+                .verifyComplete();
+
+        assertThat(requests, hasSize(4));
+        // kept document stored under its id, all others deleted
+        assertThat(requests.get(1), startsWith("{\"index\":{\"_id\":\"" + Indexer.documentId("a") + "\"}}"));
+        assertThat(requests.get(2), containsString(Indexer.documentId("a")));
+    }
+
+    @Test
+    void delete() {
+        // GIVEN
+        responses.add("{\"deleted\":2}");
+        Indexer indexer = new Indexer(config, stubbedElastic(), new SimpleMeterRegistry(), Spans.NOOP);
+
+        // WHEN - THEN
+        StepVerifier.create(indexer.delete(List.of("2021/a.jpg", "2021/b.jpg")))
+                .expectNext(2L)
+                .verifyComplete();
+
+        assertThat(requests.get(0), containsString("\"name.keyword\":[\"2021/a.jpg\",\"2021/b.jpg\"]"));
+    }
+
+    @Test
+    void partitionedBySize() {
+        // GIVEN
+        config.getBulk().setSize(DataSize.ofBytes(200));
+        Indexer indexer = new Indexer(config, stubbedElastic(), new SimpleMeterRegistry(), Spans.NOOP);
+
+        List<Indexer.BulkItem> items = List.of(
+                new Indexer.BulkItem("a", new byte[10]),
+                new Indexer.BulkItem("b", new byte[10]),
+                new Indexer.BulkItem("c", new byte[150]));
+
+        // WHEN
+        List<List<Indexer.BulkItem>> batches = indexer.partition(items);
+
+        // THEN - an item exceeding the limit on its own is still sent
+        assertThat(batches, hasSize(2));
+        assertThat(batches.get(0), hasSize(2));
+        assertThat(batches.get(1), hasSize(1));
+    }
+
+    private static Flux<S3Entry> entries(String... keys) {
+        return Flux.just(keys)
+                .map(key -> S3Entry.builder()
+                        .key(key)
+                        .contentType(MediaType.IMAGE_JPEG_VALUE)
+                        .build());
+    }
+
+    private WebClient.Builder stubbedElastic() {
+        return WebClient.builder().exchangeFunction(request -> {
+            MockClientHttpRequest mock = new MockClientHttpRequest(HttpMethod.POST, request.url());
+            return request.writeTo(mock, ExchangeStrategies.withDefaults())
+                    .then(Mono.defer(mock::getBodyAsString))
+                    .doOnNext(requests::add)
+                    .map(body -> ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body(responses.isEmpty() ? "{\"errors\":false}" : responses.poll())
+                            .build());
+        });
+    }
+}
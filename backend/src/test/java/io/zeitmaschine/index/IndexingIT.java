@@ -6,7 +6,6 @@ import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
-import java.util.List;
 import java.util.Map;
 
 import org.json.JSONException;
@@ -33,8 +32,6 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
 import io.minio.errors.MinioException;
@@ -150,30 +147,17 @@ public class IndexingIT {
         // index might not have been initialized, wait a bit..
         Thread.sleep(5000);
 
-        Map<String, Object> payload = Map.of(
-                "from", 0,
-                "size", 3,
-                "sort", List.of(Map.of("created", Map.of("order" ,"desc"))));
-
-        String jsonString = new ObjectMapper().writeValueAsString(payload);
-
-        webTestClient.post()
+        webTestClient.get()
                 .uri(uriBuilder -> uriBuilder
-                        .path("/zeitmaschine/image/_search")
+                        .path("/gallery")
+                        .queryParam("size", 3)
                         .build())
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(BodyInserters.fromValue(jsonString))
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus().isOk()
-                .expectHeader().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE) // elastic returns deprecated content type still
                 .expectBody()
-                .jsonPath("$.hits.hits").isArray()
-
-                .jsonPath("$.hits.hits[0]._source.name").isEqualTo("IMG_20181001_185137.jpg");
-        // body example: {"took":90,"timed_out":false,"_shards":{"total":5,"successful":5,"skipped":0,"failed":0},"hits":{"total":1,"max_score":1.0,"hits":[{"_index":"zeitmaschine","_type":"image","_id":"_QwYxHYBXRNBi9tRsreb","_score":1.0,"_source":{"name":"404_resized.jpg","created":null,"location":null}}]}}
-
-
+                .jsonPath("$.images").isArray()
+                .jsonPath("$.images[0].name").isEqualTo("IMG_20181001_185137.jpg");
     }
 
     @Test
@@ -190,26 +174,17 @@ public class IndexingIT {
         // index might not have been initialized, wait a bit..
         Thread.sleep(5000);
 
-        Map<String, Object> payload = Map.of(
-                "from", 0,
-                "size", 3,
-                "sort", List.of(Map.of("created", Map.of("order" ,"desc"))));
-
-        String jsonString = new ObjectMapper().writeValueAsString(payload);
-
-        webTestClient.post()
+        webTestClient.get()
                 .uri(uriBuilder -> uriBuilder
-                        .path("/zeitmaschine/image/_search")
+                        .path("/gallery")
+                        .queryParam("size", 3)
                         .build())
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(BodyInserters.fromValue(jsonString))
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus().isOk()
-                .expectHeader().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE) // elastic returns deprecated content type still
                 .expectBody()
-                .jsonPath("$.hits.hits").isArray()
-                .jsonPath("$.hits.hits[0]._source.name").isEqualTo("IMG_20181001_185137.jpg");
+                .jsonPath("$.images").isArray()
+                .jsonPath("$.images[0].name").isEqualTo("IMG_20181001_185137.jpg");
 
         webTestClient.post()
                 .uri(uriBuilder -> uriBuilder
@@ -242,19 +217,17 @@ public class IndexingIT {
         // index might not have been initialized, wait a bit..
         Thread.sleep(5000);
 
-        webTestClient.post()
+        webTestClient.get()
                 .uri(uriBuilder -> uriBuilder
-                        .path("/zeitmaschine/image/_search")
+                        .path("/gallery")
+                        .queryParam("size", 3)
                         .build())
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(BodyInserters.fromValue(jsonString))
                 .accept(MediaType.APPLICATION_JSON)
                 .exchange()
                 .expectStatus().isOk()
-                .expectHeader().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE) // elastic returns deprecated content type still
                 .expectBody()
-                .jsonPath("$.hits.hits").isArray()
-                .jsonPath("$.hits.hits[0]._source.name").isEqualTo("IMG_20181001_185137.jpg");
+                .jsonPath("$.images").isArray()
+                .jsonPath("$.images[0].name").isEqualTo("IMG_20181001_185137.jpg");
 
     }
 
@@ -0,0 +1,305 @@
+package io.zeitmaschine.index;
+
+import static io.zeitmaschine.s3.Processor.META_VERSION;
+import static io.zeitmaschine.s3.Processor.META_VERSION_CURRENT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zeitmaschine.catalog.Catalog;
+import io.zeitmaschine.catalog.CatalogConfig;
+import io.zeitmaschine.s3.MetaDataProcessingRepository;
+import io.zeitmaschine.s3.ObjectMetaDataStore;
+import io.zeitmaschine.s3.S3Config;
+import io.zeitmaschine.s3.S3Entry;
+import io.zeitmaschine.s3.S3Repository;
+import io.zeitmaschine.tracing.Spans;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class ReindexTest {
+
+    private static final String PREFIX = "2018";
+
+    private S3Repository repository;
+    private MetaDataProcessingRepository processing;
+    private Catalog catalog;
+    private JobsConfig config;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(S3Repository.class);
+        processing = MetaDataProcessingRepository.wrap(repository, new S3Config.Metadata(), new ObjectMetaDataStore(repository), new SimpleMeterRegistry());
+        catalog = new Catalog(new CatalogConfig());
+        config = new JobsConfig();
+    }
+
+    @AfterEach
+    void tearDown() {
+        processing.destroy();
+    }
+
+    @Test
+    void done() throws InterruptedException {
+        // GIVEN
+        when(repository.list(PREFIX, null)).thenReturn(entries("a", "b", "c"));
+        Jobs jobs = jobs(indexed());
+
+        // WHEN
+        String id = jobs.start(PREFIX, false);
+
+        // THEN
+        Reindex.Status status = await(jobs, id, s -> s.state() != Reindex.State.RUNNING);
+        assertThat(status.id(), is(id));
+        assertThat(status.state(), is(Reindex.State.DONE));
+        assertThat(status.indexed(), is(3L));
+        assertThat(status.startAfter(), is(PREFIX + "/c"));
+    }
+
+    @Test
+    void pauseAndResume() throws InterruptedException {
+        // GIVEN - the third object hangs in the indexer
+        when(repository.list(PREFIX, null)).thenReturn(entries("a", "b", "c"));
+        when(repository.list(PREFIX, PREFIX + "/b")).thenReturn(entries("c"));
+        Function<Flux<S3Entry>, Flux<IndexResult>> hanging = entries -> entries
+                .filter(entry -> !entry.key().endsWith("c"))
+                .map(entry -> new IndexResult(entry.key(), 201, null))
+                .concatWith(Flux.never());
+        Jobs jobs = jobs(hanging);
+        String id = jobs.start(PREFIX, false);
+        await(jobs, id, s -> s.indexed() == 2);
+
+        // WHEN
+        assertThat(jobs.get(id).orElseThrow().pause(), is(true));
+
+        // THEN
+        Reindex.Status paused = jobs.get(id).orElseThrow().status();
+        assertThat(paused.state(), is(Reindex.State.PAUSED));
+        assertThat(paused.startAfter(), is(PREFIX + "/b"));
+
+        // WHEN - after a restart
+        Jobs restarted = jobs(indexed());
+        assertThat(restarted.get(id).orElseThrow().resume(), is(true));
+
+        // THEN
+        verify(repository).list(PREFIX, PREFIX + "/b");
+        Reindex.Status done = await(restarted, id, s -> s.state() != Reindex.State.RUNNING);
+        assertThat(done.state(), is(Reindex.State.DONE));
+        assertThat(done.indexed(), is(3L));
+    }
+
+    @Test
+    void interruptedIsPaused() throws InterruptedException {
+        // GIVEN - a running reindex, never finishing
+        when(repository.list(PREFIX, null)).thenReturn(entries("a").concatWith(Flux.never()));
+        Jobs running = jobs(indexed());
+        String id = running.start(PREFIX, false);
+        await(running, id, s -> s.indexed() == 1);
+
+        // WHEN
+        Jobs restarted = jobs(indexed());
+
+        // THEN
+        Reindex reindex = restarted.get(id).orElseThrow();
+        assertThat(reindex.status().state(), is(Reindex.State.PAUSED));
+        assertThat(reindex.cancel(), is(true));
+        assertThat(reindex.resume(), is(false));
+    }
+
+    @Test
+    void unchangedSkipped() throws InterruptedException {
+        // GIVEN
+        entries("a").subscribe(catalog::update);
+        when(repository.list(PREFIX, null)).thenReturn(entries("a", "b"));
+        Jobs jobs = jobs(indexed());
+
+        // WHEN
+        String id = jobs.start(PREFIX, false);
+
+        // THEN
+        Reindex.Status status = await(jobs, id, s -> s.state() != Reindex.State.RUNNING);
+        assertThat(status.indexed(), is(1L));
+        assertThat(status.skipped(), is(1L));
+        assertThat(status.startAfter(), is(PREFIX + "/b"));
+    }
+
+    @Test
+    void fullAfterWipe() throws InterruptedException {
+        // GIVEN - everything cataloged, then the index is wiped
+        entries("a", "b").subscribe(catalog::update);
+        when(repository.list(PREFIX, null)).thenAnswer(i -> entries("a", "b"));
+        Jobs jobs = jobs(indexed());
+        jobs.wiped();
+
+        // WHEN
+        String id = jobs.start(PREFIX, false);
+
+        // THEN
+        Reindex.Status status = await(jobs, id, Reindex.Status::finished);
+        assertThat(status.indexed(), is(2L));
+        assertThat(status.skipped(), is(0L));
+
+        // WHEN - rebuilt from the catalog
+        jobs.rebuilt();
+        String next = jobs.start(PREFIX, false);
+
+        // THEN
+        assertThat(await(jobs, next, Reindex.Status::finished).skipped(), is(2L));
+    }
+
+    @Test
+    void unserializableFailed() throws InterruptedException {
+        // GIVEN - "b" can't be serialized
+        when(repository.list(PREFIX, null)).thenReturn(entries("a", "b", "c"));
+        ObjectMapper objectMapper = new ObjectMapper() {
+            @Override
+            public byte[] writeValueAsBytes(Object value) throws JsonProcessingException {
+                if (((Image) value).getName().equals(PREFIX + "/b")) {
+                    throw new JsonMappingException(null, "unserializable");
+                }
+                return super.writeValueAsBytes(value);
+            }
+        };
+        WebClient.Builder elastic = WebClient.builder().exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body("{\"errors\":false}")
+                .build()));
+        IndexerConfig indexerConfig = new IndexerConfig();
+        indexerConfig.setHost("http://elastic");
+        indexerConfig.setIndex("zeitmaschine");
+        indexerConfig.setResource("image");
+        Indexer indexer = new Indexer(indexerConfig, elastic, objectMapper, new SimpleMeterRegistry(), Spans.NOOP);
+        Jobs jobs = jobs(indexer::index);
+
+        // WHEN
+        String id = jobs.start(PREFIX, false);
+
+        // THEN
+        Reindex.Status status = await(jobs, id, s -> s.state() != Reindex.State.RUNNING);
+        assertThat(status.state(), is(Reindex.State.DONE));
+        assertThat(status.indexed(), is(2L));
+        assertThat(status.failed(), is(1L));
+    }
+
+    @Test
+    void finishedPruned() throws InterruptedException {
+        // GIVEN
+        config.setHistory(1);
+        when(repository.list(PREFIX, null)).thenAnswer(i -> entries("a"));
+        Jobs jobs = jobs(indexed());
+        String first = jobs.start(PREFIX, true);
+        await(jobs, first, Reindex.Status::finished);
+        Thread.sleep(2);
+        String second = jobs.start(PREFIX, true);
+        await(jobs, second, Reindex.Status::finished);
+        Thread.sleep(2);
+
+        // WHEN
+        jobs.start(PREFIX, true);
+
+        // THEN
+        assertThat(jobs.get(first).isPresent(), is(false));
+        assertThat(jobs(indexed()).get(first).isPresent(), is(false));
+        assertThat(jobs.get(second).isPresent(), is(true));
+    }
+
+    @Test
+    void rateLimited() throws InterruptedException {
+        // GIVEN - two tokens, the next one takes a quarter of an hour
+        config.getS3().setRate(0.001);
+        config.getS3().setBurst(2);
+        when(repository.list(PREFIX, null)).thenReturn(entries("a", "b", "c", "d", "e", "f"));
+        Jobs jobs = jobs(indexed());
+
+        // WHEN
+        String id = jobs.start(PREFIX, true);
+
+        // THEN - the others wait for their tokens
+        Reindex.Status status = await(jobs, id, s -> s.indexed() >= 2);
+        assertThat(status.indexed(), is(2L));
+        assertThat(jobs.get(id).orElseThrow().cancel(), is(true));
+        assertThat(jobs.get(id).orElseThrow().status().indexed(), is(2L));
+    }
+
+    @Test
+    void unchangedNotRateLimited() throws InterruptedException {
+        // GIVEN - a single token, the next one takes a quarter of an hour
+        config.getS3().setRate(0.001);
+        entries("a", "b", "c", "d").subscribe(catalog::update);
+        when(repository.list(PREFIX, null)).thenReturn(entries("a", "b", "c", "d", "e"));
+        Jobs jobs = jobs(indexed());
+
+        // WHEN
+        String id = jobs.start(PREFIX, false);
+
+        // THEN - only the changed one takes a token, the job doesn't wait for another
+        Reindex.Status status = await(jobs, id, Reindex.Status::finished);
+        assertThat(status.state(), is(Reindex.State.DONE));
+        assertThat(status.skipped(), is(4L));
+        assertThat(status.indexed(), is(1L));
+    }
+
+    @Test
+    void checkpointBoundedByFirstInFlight() {
+        Reindex.Progress progress = new Reindex.Progress(new Reindex.Status("id", Reindex.State.RUNNING, PREFIX, false, null, 0, 0, 0, 0, 0, 0));
+        progress.listed("a");
+        progress.listed("b");
+        progress.listed("c");
+
+        assertThat(progress.done("b"), is(false));
+        assertThat(progress.startAfter(), nullValue());
+        assertThat(progress.done("a"), is(true));
+        assertThat(progress.startAfter(), is("b"));
+        assertThat(progress.done("c"), is(true));
+        assertThat(progress.startAfter(), is("c"));
+    }
+
+    private Jobs jobs(Function<Flux<S3Entry>, Flux<IndexResult>> indexer) {
+        return new Jobs(repository, processing, indexer, catalog, config);
+    }
+
+    // processing runs on its own scheduler
+    private static Reindex.Status await(Jobs jobs, String id, Predicate<Reindex.Status> condition) throws InterruptedException {
+        Reindex reindex = jobs.get(id).orElseThrow();
+        for (int i = 0; i < 500; i++) {
+            Reindex.Status status = reindex.status();
+            if (condition.test(status)) {
+                return status;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Reindex status: " + reindex.status());
+    }
+
+    private static Function<Flux<S3Entry>, Flux<IndexResult>> indexed() {
+        return entries -> entries.map(entry -> new IndexResult(entry.key(), 201, null));
+    }
+
+    private static Flux<S3Entry> entries(String... names) {
+        return Flux.fromArray(names)
+                .map(name -> S3Entry.builder()
+                        .key(PREFIX + "/" + name)
+                        .etag(name)
+                        .contentType(MediaType.IMAGE_JPEG_VALUE)
+                        .metaData(Map.of(META_VERSION, META_VERSION_CURRENT))
+                        .build());
+    }
+}
@@ -0,0 +1,243 @@
+package io.zeitmaschine.index;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+import io.zeitmaschine.catalog.Catalog;
+import io.zeitmaschine.catalog.CatalogConfig;
+import io.zeitmaschine.s3.S3Entry;
+import io.zeitmaschine.s3.S3Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class WebhookIngestTest {
+
+    private S3Repository repository;
+    private Catalog catalog;
+    private JobsConfig.Webhook config;
+    private List<List<String>> indexed;
+    private List<List<String>> deleted;
+    private WebhookIngest ingest;
+    private EventJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(S3Repository.class);
+        when(repository.get(anyString(), anyString())).thenAnswer(i -> Mono.just(S3Entry.builder()
+                .key(i.getArgument(1))
+                .contentType(MediaType.IMAGE_JPEG_VALUE)
+                .build()));
+        catalog = new Catalog(new CatalogConfig());
+        config = new JobsConfig.Webhook();
+        config.setWindow(Duration.ofMillis(100));
+        config.setRetryBackoff(Duration.ofMillis(10));
+        indexed = new CopyOnWriteArrayList<>();
+        deleted = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        ingest.destroy();
+    }
+
+    @Test
+    void dedupWithinWindow() throws InterruptedException {
+        // GIVEN
+        ingest = ingest(indexer());
+
+        // WHEN
+        ingest.submit(List.of(created("a"), created("b")));
+        ingest.submit(List.of(created("a"), created("c"), removed("c")));
+
+        // THEN
+        await(ingest);
+        assertThat(indexed, contains(List.of("a", "b")));
+        assertThat(deleted, contains(List.of("c")));
+    }
+
+    @Test
+    void batched() throws InterruptedException {
+        // GIVEN - the batch is full long before the window ends
+        config.setBatch(2);
+        config.setWindow(Duration.ofMinutes(1));
+        ingest = ingest(indexer());
+
+        // WHEN
+        ingest.submit(List.of(created("a"), created("b"), created("c"), created("d")));
+
+        // THEN
+        await(ingest);
+        assertThat(indexed, contains(List.of("a", "b"), List.of("c", "d")));
+    }
+
+    @Test
+    void refusedAtCapacity() {
+        // GIVEN - indexing hangs
+        config.setCapacity(2);
+        ingest = ingest(entries -> entries.thenMany(Flux.never()));
+
+        // WHEN - THEN
+        assertThat(ingest.submit(List.of(created("a"), created("b"))), is(true));
+        assertThat(ingest.submit(List.of(created("c"))), is(false));
+        assertThat(ingest.pending(), is(2));
+    }
+
+    @Test
+    void replayedAfterRestart(@TempDir Path dir) throws IOException, InterruptedException {
+        // GIVEN - accepted but never processed
+        journal = new EventJournal(dir, DataSize.ofKilobytes(64));
+        ingest = ingest(entries -> entries.thenMany(Flux.never()));
+        ingest.submit(List.of(created("a"), created("b")));
+        ingest.destroy();
+
+        // WHEN
+        journal = new EventJournal(dir, DataSize.ofKilobytes(64));
+        ingest = ingest(indexer());
+
+        // THEN
+        await(ingest);
+        assertThat(indexed, contains(List.of("a", "b")));
+        assertThat(journal.replay(), empty());
+    }
+
+    @Test
+    void failedRetried(@TempDir Path dir) throws IOException, InterruptedException {
+        // GIVEN - elastic is down for the first attempt, "b" can't be read on the second
+        journal = new EventJournal(dir, DataSize.ofKilobytes(64));
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger reads = new AtomicInteger();
+        when(repository.get("media", "b")).thenAnswer(i -> reads.incrementAndGet() == 1
+                ? Mono.error(new IOException("s3 unavailable"))
+                : Mono.just(S3Entry.builder().key("b").contentType(MediaType.IMAGE_JPEG_VALUE).build()));
+        Function<Flux<S3Entry>, Flux<IndexResult>> indexer = indexer();
+        ingest = ingest(entries -> attempts.incrementAndGet() == 1 ? Flux.error(new IOException("elastic unavailable")) : indexer.apply(entries));
+
+        // WHEN
+        ingest.submit(List.of(created("a"), created("b")));
+
+        // THEN - "a" isn't indexed again once done
+        await(ingest);
+        assertThat(indexed, contains(List.of("a"), List.of("b")));
+        assertThat(journal.replay(), empty());
+    }
+
+    @Test
+    void failedReplayedAfterRestart(@TempDir Path dir) throws IOException, InterruptedException {
+        // GIVEN - elastic is down until the restart
+        journal = new EventJournal(dir, DataSize.ofKilobytes(64));
+        AtomicInteger attempts = new AtomicInteger();
+        ingest = ingest(entries -> {
+            attempts.incrementAndGet();
+            return Flux.error(new IOException("elastic unavailable"));
+        });
+        ingest.submit(List.of(created("a"), removed("b")));
+        for (int i = 0; i < 500 && attempts.get() < 2; i++) {
+            Thread.sleep(10);
+        }
+        ingest.destroy();
+
+        // WHEN
+        journal = new EventJournal(dir, DataSize.ofKilobytes(64));
+        ingest = ingest(indexer());
+
+        // THEN - the failed batch wasn't committed
+        await(ingest);
+        assertThat(indexed, contains(List.of("a")));
+        assertThat(deleted, hasItem(List.of("b")));
+        assertThat(journal.replay(), empty());
+    }
+
+    @Test
+    void givenUpAfterRetries(@TempDir Path dir) throws IOException, InterruptedException {
+        // GIVEN - "bad" can never be read
+        journal = new EventJournal(dir, DataSize.ofKilobytes(64));
+        config.setRetries(2);
+        when(repository.get("media", "bad")).thenReturn(Mono.error(new IOException("s3 unavailable")));
+        ingest = ingest(indexer());
+        ingest.submit(List.of(created("bad"), created("a")));
+        await(ingest);
+
+        // WHEN
+        ingest.submit(List.of(created("c")));
+
+        // THEN - the later batch isn't held up and both are committed
+        await(ingest);
+        assertThat(indexed, hasItems(List.of("a"), List.of("c")));
+        assertThat(journal.replay(), empty());
+    }
+
+    @Test
+    void submittedBeforeStarted(@TempDir Path dir) throws IOException, InterruptedException {
+        // GIVEN - "b" was created before the restart
+        journal = new EventJournal(dir, DataSize.ofKilobytes(64));
+        ingest = ingest(entries -> entries.thenMany(Flux.never()));
+        ingest.submit(List.of(created("a"), created("b")));
+        ingest.destroy();
+        journal = new EventJournal(dir, DataSize.ofKilobytes(64));
+        ingest = created(indexer());
+
+        // WHEN - and removed while the application starts
+        assertThat(ingest.submit(List.of(removed("b"), created("c"))), is(true));
+        ingest.start();
+
+        // THEN - the removal isn't overtaken by the replay
+        await(ingest);
+        assertThat(indexed, contains(List.of("a", "c")));
+        assertThat(deleted, contains(List.of("b")));
+        assertThat(journal.replay(), empty());
+    }
+
+    private WebhookIngest ingest(Function<Flux<S3Entry>, Flux<IndexResult>> indexer) {
+        WebhookIngest ingest = created(indexer);
+        ingest.start();
+        return ingest;
+    }
+
+    // not yet processing, as until the application is ready
+    private WebhookIngest created(Function<Flux<S3Entry>, Flux<IndexResult>> indexer) {
+        return new WebhookIngest(repository, "media", indexer, keys -> {
+            deleted.add(keys);
+            return Mono.just((long) keys.size());
+        }, catalog, config, journal);
+    }
+
+    private Function<Flux<S3Entry>, Flux<IndexResult>> indexer() {
+        return entries -> entries.collectList()
+                .doOnNext(batch -> indexed.add(batch.stream().map(S3Entry::key).sorted().toList()))
+                .flatMapMany(Flux::fromIterable)
+                .map(entry -> new IndexResult(entry.key(), 201, null));
+    }
+
+    private static void await(WebhookIngest ingest) throws InterruptedException {
+        for (int i = 0; i < 500 && ingest.pending() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(ingest.pending(), is(0));
+    }
+
+    private static WebhookIngest.Event created(String key) {
+        return new WebhookIngest.Event(key, false);
+    }
+
+    private static WebhookIngest.Event removed(String key) {
+        return new WebhookIngest.Event(key, true);
+    }
+}
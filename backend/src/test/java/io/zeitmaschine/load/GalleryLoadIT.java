@@ -0,0 +1,83 @@
+package io.zeitmaschine.load;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import com.jayway.jsonpath.JsonPath;
+
+import io.zeitmaschine.s3.Processor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Users scrolling through the gallery like the frontend does: a page of 64 images is fetched, then their thumbnails
+ * are loaded in a burst, as many at a time as a browser opens connections. Users start at different pages and
+ * overlap, thumbnails are partly rendered, partly cached. The pages before a user's start are scrolled past without
+ * loading thumbnails, which makes for plenty of deep pages.
+ */
+class GalleryLoadIT extends LoadScenario {
+
+    private static final int USERS = 16;
+    private static final int PAGES = 8;
+    private static final int PAGE_SIZE = 64;
+    // connections per host of a browser
+    private static final int BURST = 6;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, String> processed = Map.of(Processor.META_VERSION, Processor.META_VERSION_CURRENT);
+        for (int i = 0; i < GALLERY_SIZE; i++) {
+            s3.put(BUCKET, galleryKey(i), IMAGES[i % IMAGES.length], MediaType.IMAGE_JPEG_VALUE, processed);
+        }
+    }
+
+    @Test
+    void scroll() throws IOException {
+        LoadReport report = LoadReport.start("gallery-scroll");
+
+        Flux.range(0, USERS)
+                // users start 3 pages apart
+                .flatMap(user -> page(report, null, 0, user * 3), USERS)
+                .blockLast();
+
+        LoadReport.Summary summary = report.finish();
+        assertThat(summary.operations().stream().map(operation -> operation.statuses().keySet()).toList(),
+                contains(Set.of(200), Set.of(200)));
+    }
+
+    // at the end of the gallery the user starts over at the top
+    private Mono<Void> page(LoadReport report, String cursor, int page, int first) {
+        if (page == first + PAGES) {
+            return Mono.empty();
+        }
+        Mono<ResponseEntity<String>> gallery = client.get()
+                .uri(uri -> uri.path("/gallery")
+                        .queryParam("size", PAGE_SIZE)
+                        .queryParamIfPresent("cursor", Optional.ofNullable(cursor))
+                        .build())
+                .exchangeToMono(response -> response.toEntity(String.class));
+        return report.record("gallery", gallery, ResponseEntity::getStatusCodeValue)
+                .filter(response -> response.getStatusCode().is2xxSuccessful())
+                .flatMap(response -> thumbnails(report, page < first ? List.of() : JsonPath.read(response.getBody(), "$.images[*].name"))
+                        .then(page(report, JsonPath.read(response.getBody(), "$.next"), page + 1, first)));
+    }
+
+    private Mono<Void> thumbnails(LoadReport report, List<String> names) {
+        return Flux.fromIterable(names)
+                .flatMap(name -> report.record("thumbnail", status(client.get()
+                        .uri(uri -> uri.path("/image/thumbnail").queryParam("name", name).build())
+                        .accept(MediaType.IMAGE_JPEG))), BURST)
+                .then();
+    }
+}
@@ -0,0 +1,112 @@
+package io.zeitmaschine.load;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.in;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+
+import io.zeitmaschine.s3.Processor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Indexing under load: a bulk upload notified object by object, and reindexing a whole prefix.
+ */
+class IndexingLoadIT extends LoadScenario {
+
+    private static final int UPLOADS = 4000;
+    // s3 delivers notifications concurrently
+    private static final int NOTIFIERS = 64;
+    private static final int LIBRARY = 10000;
+    private static final Duration TIMEOUT = Duration.ofMinutes(5);
+
+    /**
+     * The uploaded objects aren't processed yet, the exif is read for every one of them. Refused notifications are
+     * delivered again like s3 does.
+     */
+    @Test
+    void webhookStorm() throws IOException, InterruptedException {
+        for (int i = 0; i < UPLOADS; i++) {
+            s3.put(BUCKET, "upload/IMG_%05d.jpg".formatted(i), IMAGES[i % IMAGES.length], MediaType.IMAGE_JPEG_VALUE, Map.of());
+        }
+        long before = elastic.indexed();
+        LoadReport report = LoadReport.start("webhook-storm");
+
+        Flux.range(0, UPLOADS)
+                .flatMap(i -> notify(report, "upload/IMG_%05d.jpg".formatted(i)), NOTIFIERS)
+                .blockLast();
+        long deadline = System.currentTimeMillis() + TIMEOUT.toMillis();
+        while (elastic.indexed() - before < UPLOADS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        report.count("indexed", elastic.indexed() - before);
+
+        LoadReport.Summary summary = report.finish();
+        assertThat(summary.operations().get(0).statuses().keySet(), everyItem(in(List.of(200, 503))));
+        assertThat(elastic.indexed() - before, is((long) UPLOADS));
+    }
+
+    /**
+     * Already processed objects, a folder per year, listed and bulk indexed as fast as the pipeline goes.
+     */
+    @Test
+    void reindexPrefix() throws IOException, InterruptedException {
+        Map<String, String> processed = Map.of(Processor.META_VERSION, Processor.META_VERSION_CURRENT);
+        for (int i = 0; i < LIBRARY; i++) {
+            s3.put(BUCKET, "library/%d/IMG_%05d.jpg".formatted(2012 + i % 10, i), IMAGES[i % IMAGES.length], MediaType.IMAGE_JPEG_VALUE, processed);
+        }
+        LoadReport report = LoadReport.start("reindex-prefix");
+
+        String id = client.post()
+                .uri("/index/prefix")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"prefix\":\"library/\",\"full\":true}")
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(response -> JsonPath.<String>read(response, "$.id"))
+                .block();
+        DocumentContext status = null;
+        long deadline = System.currentTimeMillis() + TIMEOUT.toMillis();
+        while (System.currentTimeMillis() < deadline) {
+            status = JsonPath.parse(report.record("status", client.get().uri("/index/jobs/{id}", id)
+                            .retrieve()
+                            .toEntity(String.class), response -> response.getStatusCodeValue())
+                    .block()
+                    .getBody());
+            if (!"RUNNING".equals(status.read("$.state"))) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        report.count("indexed", status.read("$.indexed", Long.class));
+
+        report.finish();
+        assertThat(status.read("$.state"), is("DONE"));
+        assertThat(status.read("$.indexed", Long.class), is((long) LIBRARY));
+    }
+
+    private Mono<Integer> notify(LoadReport report, String key) {
+        String notification = """
+                {"EventName":"s3:ObjectCreated:Put","Key":"%1$s/%2$s","Records":[{"eventVersion":"2.0","eventSource":"minio:s3","eventName":"s3:ObjectCreated:Put","s3":{"bucket":{"name":"%1$s"},"object":{"key":"%2$s","contentType":"image/jpeg"}}}]}
+                """.formatted(BUCKET, URLEncoder.encode(key, StandardCharsets.UTF_8));
+        return report.record("webhook", status(client.post()
+                        .uri("/index/webhook")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(notification)))
+                .filter(status -> status != 503)
+                .repeatWhenEmpty(Integer.MAX_VALUE, attempts -> attempts.delayElements(Duration.ofMillis(100)));
+    }
+}
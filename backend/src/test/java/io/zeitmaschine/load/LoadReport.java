@@ -0,0 +1,146 @@
+package io.zeitmaschine.load;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Latencies and status codes per operation of a load scenario, plus the allocation rate and GC time of the JVM
+ * while it ran. The stand-ins and the load generator share the JVM with the application and count into the
+ * allocations, compare runs rather than reading the absolute numbers.
+ * <p>
+ * The summary is printed and written to target/load-reports/{scenario}.json.
+ */
+class LoadReport {
+
+    private final static Path REPORTS = Path.of("target", "load-reports");
+
+    record Operation(String name, long requests, Map<Integer, Long> statuses, double throughput, double p50, double p99, double max) {}
+
+    // latencies in ms, throughput and rates per second, allocation rate in MB/s
+    record Summary(String scenario, long elapsed, double allocationRate, long gcTime, List<Operation> operations, Map<String, Double> rates) {}
+
+    private final String scenario;
+    private final Map<String, Recorder> operations = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> counts = new ConcurrentSkipListMap<>();
+    private final long started = System.nanoTime();
+    private final long allocated = allocated();
+    private final long gcTime = gcTime();
+
+    private LoadReport(String scenario) {
+        this.scenario = scenario;
+    }
+
+    static LoadReport start(String scenario) {
+        return new LoadReport(scenario);
+    }
+
+    /**
+     * Times the request from subscription to its status, failures without a response count as 599.
+     */
+    Mono<Integer> record(String operation, Mono<Integer> request) {
+        return record(operation, request, status -> status).defaultIfEmpty(599);
+    }
+
+    /**
+     * Times the request from subscription to its response, failures without a response count as 599 and complete
+     * empty.
+     */
+    <T> Mono<T> record(String operation, Mono<T> request, ToIntFunction<T> status) {
+        Recorder recorder = operations.computeIfAbsent(operation, name -> new Recorder());
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return request
+                    .doOnNext(response -> recorder.add(System.nanoTime() - start, status.applyAsInt(response)))
+                    .onErrorResume(e -> {
+                        recorder.add(System.nanoTime() - start, 599);
+                        return Mono.empty();
+                    });
+        });
+    }
+
+    /**
+     * Something done during the scenario that isn't a request, e.g. documents indexed. Reported per second.
+     */
+    void count(String name, long count) {
+        counts.merge(name, count, Long::sum);
+    }
+
+    Summary finish() throws IOException {
+        long elapsed = System.nanoTime() - started;
+        double seconds = elapsed / 1e9;
+        List<Operation> summaries = new ArrayList<>();
+        operations.forEach((name, recorder) -> summaries.add(recorder.summarize(name, seconds)));
+        Map<String, Double> rates = new ConcurrentSkipListMap<>();
+        counts.forEach((name, count) -> rates.put(name, count / seconds));
+        Summary summary = new Summary(scenario, elapsed / 1_000_000, (allocated() - allocated) / 1e6 / seconds,
+                gcTime() - gcTime, summaries, rates);
+
+        System.out.printf("%n%s: %d ms, allocation rate %.1f MB/s, gc %d ms%n", scenario, summary.elapsed(), summary.allocationRate(), summary.gcTime());
+        System.out.printf("%-20s %10s %12s %10s %10s %10s  %s%n", "operation", "requests", "req/s", "p50 ms", "p99 ms", "max ms", "statuses");
+        summaries.forEach(operation -> System.out.printf("%-20s %10d %12.1f %10.2f %10.2f %10.2f  %s%n",
+                operation.name(), operation.requests(), operation.throughput(), operation.p50(), operation.p99(), operation.max(), operation.statuses()));
+        rates.forEach((name, rate) -> System.out.printf("%-20s %10d %12.1f/s%n", name, counts.get(name), rate));
+
+        Files.createDirectories(REPORTS);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(REPORTS.resolve(scenario + ".json").toFile(), summary);
+        return summary;
+    }
+
+    // by the live threads, the pools of the application and the client live as long as the scenario
+    private static long allocated() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return Arrays.stream(threads.getThreadAllocatedBytes(threads.getAllThreadIds())).filter(bytes -> bytes > 0).sum();
+    }
+
+    private static long gcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static class Recorder {
+
+        // guarded by this
+        private long[] latencies = new long[1024];
+        private int count;
+        private final Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+
+        synchronized void add(long latency, int status) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+            statuses.computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+        }
+
+        synchronized Operation summarize(String name, double seconds) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            Map<Integer, Long> counts = new ConcurrentSkipListMap<>();
+            statuses.forEach((status, n) -> counts.put(status, n.get()));
+            return new Operation(name, count, counts, count / seconds, percentile(sorted, 0.5), percentile(sorted, 0.99),
+                    count > 0 ? sorted[count - 1] / 1e6 : 0);
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) Math.ceil(percentile * sorted.length) - 1] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package io.zeitmaschine.load;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * The application against in-process stand-ins for s3, elastic and imaginary, all scenarios share the context.
+ * Rate limits are lifted, the scenarios measure the pipeline rather than its configuration.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ContextConfiguration(initializers = { LoadScenario.Initializer.class })
+abstract class LoadScenario {
+
+    static final String BUCKET = "media";
+    static final String CACHE_BUCKET = "media-cache";
+    static final int GALLERY_SIZE = 2048;
+    // the time imaginary takes for a resize
+    static final Duration RESIZE_LATENCY = Duration.ofMillis(20);
+
+    static final byte[][] IMAGES = {image("IMG_20180614_214734.jpg"), image("IMG_20181001_185137.jpg")};
+
+    static LocalS3 s3;
+    static LocalElasticsearch elastic;
+    static LocalImaginary imaginary;
+
+    // no issuer to ask, any bearer token is fine
+    @MockBean
+    private ReactiveJwtDecoder jwtDecoder;
+
+    @LocalServerPort
+    private int port;
+
+    WebClient client;
+
+    @BeforeEach
+    void setUpClient() {
+        when(jwtDecoder.decode(anyString())).thenAnswer(invocation -> Mono.just(Jwt.withTokenValue(invocation.getArgument(0))
+                .header("alg", "none")
+                .subject("load")
+                .build()));
+        client = WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer load")
+                .build();
+    }
+
+    // status after the body has been read
+    static Mono<Integer> status(WebClient.RequestHeadersSpec<?> request) {
+        return request.exchangeToMono(response -> response.releaseBody().thenReturn(response.rawStatusCode()));
+    }
+
+    static String galleryKey(int i) {
+        return "gallery/IMG_%05d.jpg".formatted(i);
+    }
+
+    private static byte[] image(String name) {
+        try (InputStream in = new ClassPathResource("images/" + name).getInputStream()) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static class Initializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+        public void initialize(ConfigurableApplicationContext context) {
+            List<String> gallery = new ArrayList<>();
+            for (int i = 0; i < GALLERY_SIZE; i++) {
+                gallery.add(galleryKey(i));
+            }
+            try {
+                s3 = new LocalS3();
+                elastic = new LocalElasticsearch(gallery);
+                imaginary = new LocalImaginary(RESIZE_LATENCY);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            s3.create(BUCKET);
+            s3.create(CACHE_BUCKET);
+
+            TestPropertyValues.of(
+                    "s3.host=" + s3.host(),
+                    "s3.bucket=" + BUCKET,
+                    "s3.cache-bucket=" + CACHE_BUCKET,
+                    "s3.webhook=false",
+                    "elasticsearch.host=" + elastic.host(),
+                    "imaginary.host=" + imaginary.host(),
+                    "jobs.s3.rate=0",
+                    "jobs.elastic.rate=0"
+            ).applyTo(context.getEnvironment());
+        }
+    }
+}
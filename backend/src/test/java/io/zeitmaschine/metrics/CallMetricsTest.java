@@ -0,0 +1,90 @@
+package io.zeitmaschine.metrics;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class CallMetricsTest {
+
+    private static final Tags TAGS = Tags.of("operation", "get", "bucket", "media");
+
+    private SimpleMeterRegistry registry;
+    private CallMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new CallMetrics("s3", registry);
+    }
+
+    @Test
+    void outcomes() {
+        metrics.time(TAGS, Mono.just("object")).block();
+        metrics.time(TAGS, Mono.empty()).block();
+        StepVerifier.create(metrics.time(TAGS, Flux.error(new IllegalStateException("s3 down"))))
+                .verifyError(IllegalStateException.class);
+
+        assertThat(calls("success"), is(1L));
+        assertThat(calls("empty"), is(1L));
+        assertThat(calls("error"), is(1L));
+        assertThat(registry.get("s3.errors").tags(TAGS).tag("exception", "IllegalStateException").counter().count(), is(1.0));
+    }
+
+    @Test
+    void timedOnSubscription() {
+        Mono<String> call = metrics.time(TAGS, Mono.just("object"));
+
+        assertThat(registry.find("s3.calls").timer(), nullValue());
+
+        call.block();
+        call.block();
+        assertThat(calls("success"), is(2L));
+    }
+
+    @Test
+    void blockingCallRethrows() {
+        assertThrows(IOException.class, () -> metrics.time(TAGS, () -> {
+            throw new IOException("s3 down");
+        }));
+
+        assertThat(calls("error"), is(1L));
+        assertThat(registry.get("s3.errors").tags(TAGS).tag("exception", "IOException").counter().count(), is(1.0));
+    }
+
+    @Test
+    void bytesCountedAsRead() throws IOException {
+        InputStream stream = metrics.received(TAGS, new ByteArrayInputStream(new byte[100]));
+
+        stream.read();
+        stream.read(new byte[10]);
+        assertThat(bytes("received"), is(11.0));
+
+        stream.readAllBytes();
+        assertThat(bytes("received"), is(100.0));
+
+        metrics.sent(TAGS, 42);
+        assertThat(bytes("sent"), is(42.0));
+    }
+
+    private long calls(String outcome) {
+        return registry.get("s3.calls").tags(TAGS).tag("outcome", outcome).timer().count();
+    }
+
+    private double bytes(String direction) {
+        return registry.get("s3.bytes").tags(TAGS).tag("direction", direction).counter().count();
+    }
+}
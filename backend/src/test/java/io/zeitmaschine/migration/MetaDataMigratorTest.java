@@ -20,6 +20,7 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.zeitmaschine.s3.BucketHealthIndicator;
 import io.zeitmaschine.s3.MinioHealthIndicator;
 import io.zeitmaschine.s3.MinioRepository;
@@ -62,7 +63,7 @@ class MetaDataMigratorTest {
         config.setWebhook(false);
         config.setHost("http://" + minioContainer.getHost() + ":" + minioContainer.getMappedPort(MINIO_PORT));
 
-        this.s3Repository = new MinioRepository(config);
+        this.s3Repository = new MinioRepository(config, new SimpleMeterRegistry());
 
         this.bucketHealthIndicator = new BucketHealthIndicator(s3Repository);
 
@@ -0,0 +1,59 @@
+package io.zeitmaschine.s3;
+
+import static io.zeitmaschine.s3.Processor.META_CREATION_DATE;
+import static io.zeitmaschine.s3.Processor.META_VERSION;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+
+class LocalMetaDataStoreTest {
+
+    @Test
+    void storedForSameVersion() {
+        LocalMetaDataStore store = new LocalMetaDataStore((String) null);
+
+        store.put(entry("etag1", MediaType.IMAGE_JPEG_VALUE, Map.of(META_VERSION, "1", META_CREATION_DATE, "1543651200000")));
+
+        S3Entry listed = entry("etag1", MediaType.APPLICATION_OCTET_STREAM_VALUE, Map.of());
+        S3Entry stored = store.get(listed).orElseThrow();
+        assertThat(stored.metaData(), hasEntry(META_VERSION, "1"));
+        assertThat(stored.created(), notNullValue());
+        assertThat(stored.contentType(), is(MediaType.IMAGE_JPEG_VALUE));
+    }
+
+    @Test
+    void ignoredForChangedObject() {
+        LocalMetaDataStore store = new LocalMetaDataStore((String) null);
+
+        store.put(entry("etag1", MediaType.IMAGE_JPEG_VALUE, Map.of(META_VERSION, "1")));
+
+        assertThat(store.get(entry("etag2", MediaType.IMAGE_JPEG_VALUE, Map.of())).isPresent(), is(false));
+    }
+
+    @Test
+    void persisted(@TempDir Path dir) {
+        String file = dir.resolve("metadata.mv.db").toString();
+        LocalMetaDataStore store = new LocalMetaDataStore(file);
+        store.put(entry("etag1", MediaType.IMAGE_JPEG_VALUE, Map.of(META_VERSION, "1")));
+        store.destroy();
+
+        LocalMetaDataStore reopened = new LocalMetaDataStore(file);
+        assertThat(reopened.get(entry("etag1", MediaType.IMAGE_JPEG_VALUE, Map.of())).isPresent(), is(true));
+        reopened.destroy();
+    }
+
+    private static S3Entry entry(String etag, String contentType, Map<String, String> metaData) {
+        return S3Entry.builder()
+                .key("2018/IMG_20181001_185137.jpg")
+                .etag(etag)
+                .contentType(contentType)
+                .metaData(metaData)
+                .build();
+    }
+}
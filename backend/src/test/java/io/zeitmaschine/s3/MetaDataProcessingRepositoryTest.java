@@ -1,15 +1,27 @@
 package io.zeitmaschine.s3;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zeitmaschine.tracing.Spans;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
@@ -22,11 +34,11 @@ class MetaDataProcessingRepositoryTest {
     @Mock
     private Processor processor;
 
-    @InjectMocks
-    private MetaDataProcessingRepository processingRepository;
-
     @Test
     void contentTypeFilter() {
+        S3Config.Metadata config = new S3Config.Metadata();
+        config.setOrdered(true);
+        MetaDataProcessingRepository processingRepository = repository(config);
 
         //GIVEN
         Flux<S3Entry> objects = Flux.just(S3Entry.builder()
@@ -62,4 +74,47 @@ class MetaDataProcessingRepositoryTest {
 
         verify(processor, times(3)).process(any(S3Entry.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void parallelUnordered() {
+        S3Config.Metadata config = new S3Config.Metadata();
+        config.setParallelism(4);
+        MetaDataProcessingRepository processingRepository = repository(config);
+
+        when(s3Repository.get("")).thenReturn(Flux.range(0, 8).map(i -> S3Entry.builder()
+                .key("image" + i + ".jpg")
+                .contentType(MediaType.IMAGE_JPEG_VALUE)
+                .build()));
+        // the first one waits for three others, it only finishes if they are processed alongside
+        CountDownLatch others = new CountDownLatch(3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicBoolean overtaken = new AtomicBoolean();
+        when(processor.process(any(S3Entry.class))).thenAnswer(i -> {
+            S3Entry entry = i.getArgument(0);
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                if (entry.key().equals("image0.jpg")) {
+                    overtaken.set(others.await(5, TimeUnit.SECONDS));
+                } else {
+                    others.countDown();
+                }
+                return entry;
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+
+        List<String> keys = processingRepository.get("").map(S3Entry::key).collectList().block();
+
+        assertThat(overtaken.get(), is(true));
+        assertThat(maxRunning.get(), lessThanOrEqualTo(4));
+        assertThat(keys, hasSize(8));
+        assertThat(keys.get(0), not("image0.jpg"));
+    }
+
+    private MetaDataProcessingRepository repository(S3Config.Metadata config) {
+        return new MetaDataProcessingRepository(s3Repository, processor, new WriteBehindQueue("metadata", config.getWriteBack(), new SimpleMeterRegistry()),
+                config, new ObjectMetaDataStore(s3Repository), Spans.NOOP);
+    }
+}
@@ -28,6 +28,7 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import org.testcontainers.utility.DockerImageName;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.zeitmaschine.TestImagesProvider;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -67,7 +68,7 @@ public class MinioIT {
         config.setWebhook(false);
         config.setHost("http://" + minioContainer.getHost() + ":" + minioContainer.getMappedPort(MINIO_PORT));
 
-        s3Repository = new MinioRepository(config);
+        s3Repository = new MinioRepository(config, new SimpleMeterRegistry());
 
         // TODO: Write helper methods, see MetaDataMigratortest as well
         MinioHealthIndicator minoHealthIndicator = new MinioHealthIndicator(config);
@@ -168,7 +169,7 @@ public class MinioIT {
         // GIVEN
         ClassPathResource image = new ClassPathResource("images/PXL_20220202_160830986.MP.jpg");
 
-        S3Repository wrapped = MetaDataProcessingRepository.wrap(s3Repository);
+        S3Repository wrapped = MetaDataProcessingRepository.wrap(s3Repository, new S3Config.Metadata(), new ObjectMetaDataStore(s3Repository), new SimpleMeterRegistry());
         wrapped.put(config.getBucket(), image.getFilename(), image, MediaType.IMAGE_JPEG_VALUE);
 
         // WHEN - THEN
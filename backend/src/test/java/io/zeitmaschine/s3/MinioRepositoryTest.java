@@ -0,0 +1,129 @@
+package io.zeitmaschine.s3;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.ErrorResponse;
+import io.minio.messages.Item;
+
+class MinioRepositoryTest {
+
+    private static final List<String> KEYS = List.of(
+            "2017/a.jpg", "2018/01/b.jpg", "2018/01/c.jpg", "2018/02/d.jpg", "2019/e.jpg", "root.jpg");
+
+    private S3Config config;
+    private MinioClient client;
+
+    @BeforeEach
+    void setUp() {
+        config = new S3Config();
+        config.setBucket("media");
+        config.setAccess(new S3Config.Access());
+        client = mock(MinioClient.class);
+        when(client.listObjects(any(ListObjectsArgs.class))).thenAnswer(i -> list(i.getArgument(0)));
+    }
+
+    @Test
+    void sequential() {
+        MinioRepository repository = new MinioRepository(config, client, new SimpleMeterRegistry());
+
+        assertThat(keys(repository, "", null), is(KEYS));
+        verify(client, times(1)).listObjects(any());
+    }
+
+    @Test
+    void sharded() {
+        config.getListing().setFanOut(4);
+        MinioRepository repository = new MinioRepository(config, client, new SimpleMeterRegistry());
+
+        assertThat(keys(repository, "", null), is(KEYS));
+        // the top level and one listing per year
+        verify(client, times(4)).listObjects(any());
+    }
+
+    @Test
+    void shardedStartAfter() {
+        config.getListing().setFanOut(4);
+        MinioRepository repository = new MinioRepository(config, client, new SimpleMeterRegistry());
+
+        assertThat(keys(repository, "", "2018/01/b.jpg"), is(List.of("2018/01/c.jpg", "2018/02/d.jpg", "2019/e.jpg", "root.jpg")));
+        // the top level is listed after the key already, "2017/" isn't listed at all
+        verify(client).listObjects(argThat(args -> !args.recursive() && "2018/01/b.jpg".equals(args.startAfter())));
+        verify(client, times(3)).listObjects(any());
+    }
+
+    @Test
+    void flatLevelNotDescended() {
+        config.getListing().setFanOut(4);
+        MinioRepository repository = new MinioRepository(config, client, new SimpleMeterRegistry());
+
+        assertThat(keys(repository, "2019/", null), is(List.of("2019/e.jpg")));
+        // the objects come straight from the level's listing
+        verify(client, times(1)).listObjects(any());
+    }
+
+    @Test
+    void singleSubPrefixDescended() {
+        config.getListing().setFanOut(4);
+        MinioRepository repository = new MinioRepository(config, client, new SimpleMeterRegistry());
+
+        assertThat(keys(repository, "2018", null), is(List.of("2018/01/b.jpg", "2018/01/c.jpg", "2018/02/d.jpg")));
+        // "2018" -> "2018/" -> a listing per month
+        verify(client, times(4)).listObjects(any());
+    }
+
+    @Test
+    void missingObjectTimedAsEmpty() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MinioRepository repository = new MinioRepository(config, client, registry);
+        when(client.statObject(any(StatObjectArgs.class))).thenThrow(new ErrorResponseException(
+                new ErrorResponse("NoSuchKey", "not found", "media-cache", "a.jpg", null, null, null), null, null));
+
+        assertThat(repository.get("media-cache", "a.jpg").blockOptional().isPresent(), is(false));
+        assertThat(registry.get("s3.calls").tags("operation", "stat", "bucket", "media-cache", "outcome", "empty").timer().count(), is(1L));
+        assertThat(registry.find("s3.errors").counter(), nullValue());
+    }
+
+    private static List<String> keys(MinioRepository repository, String prefix, String startAfter) {
+        return repository.list(prefix, startAfter).map(S3Entry::key).collectList().block();
+    }
+
+    // what s3 does, recursive or rolled up to the next "/"
+    private static Iterable<Result<Item>> list(ListObjectsArgs args) {
+        String prefix = args.prefix() != null ? args.prefix() : "";
+        TreeSet<String> names = new TreeSet<>();
+        KEYS.stream()
+                .filter(key -> key.startsWith(prefix))
+                .filter(key -> args.startAfter() == null || key.compareTo(args.startAfter()) > 0)
+                .forEach(key -> {
+                    int folder = key.indexOf('/', prefix.length());
+                    names.add(args.recursive() || folder < 0 ? key : key.substring(0, folder + 1));
+                });
+        return names.stream()
+                .map(name -> new Result<>(item(name)))
+                .toList();
+    }
+
+    private static Item item(String name) {
+        Item item = mock(Item.class);
+        when(item.objectName()).thenReturn(name);
+        when(item.isDir()).thenReturn(name.endsWith("/"));
+        when(item.userMetadata()).thenReturn(Map.of());
+        return item;
+    }
+}
@@ -9,12 +9,18 @@ import java.time.Instant;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.assertj.core.util.Lists;
 import org.junit.jupiter.api.Test;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.MediaType;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 class ProcessorTest {
 
     @Test
@@ -23,7 +29,7 @@ class ProcessorTest {
 
         Map metaData = Map.of();
 
-        Processor processor = new Processor(s3Entry -> {});
+        Processor processor = processor(s3Entry -> {});
 
         // Image with created date, but NO location in Exif data
         ClassPathResource image = new ClassPathResource("images/IMG_20181001_185137.jpg");
@@ -46,7 +52,7 @@ class ProcessorTest {
         // GIVEN
 
         Map metaData = Map.of();
-        Processor processor = new Processor(s3Entry -> {});
+        Processor processor = processor(s3Entry -> {});
 
 
         // Image with created date AND location in Exif data
@@ -76,7 +82,7 @@ class ProcessorTest {
                 META_LOCATION_LAT, "321"
         );
 
-        Processor processor = new Processor(s3Entry -> {});
+        Processor processor = processor(s3Entry -> {});
 
         S3Entry entry = S3Entry.builder()
                 .key("test")
@@ -101,7 +107,7 @@ class ProcessorTest {
         Map metaData = Map.of();
 
         List<S3Entry> recorded = Lists.newArrayList();
-        Processor processor = new Processor(s3Entry -> recorded.add(s3Entry));
+        Processor processor = processor(s3Entry -> recorded.add(s3Entry));
 
         // Image with created date AND location in Exif data
         ClassPathResource image = new ClassPathResource("images/PXL_20220202_160830986.MP.jpg");
@@ -127,7 +133,7 @@ class ProcessorTest {
         Map metaData = Map.of();
 
         List<S3Entry> recorded = Lists.newArrayList();
-        Processor processor = new Processor(s3Entry -> recorded.add(s3Entry));
+        Processor processor = processor(s3Entry -> recorded.add(s3Entry));
 
         // Image with created date AND location in Exif data
         ClassPathResource image = new ClassPathResource("images/PXL_20220202_160830986.MP.jpg");
@@ -145,4 +151,35 @@ class ProcessorTest {
         assertThat(processed.location(), notNullValue());
         assertTrue(processed.contentType().equals(MediaType.IMAGE_JPEG_VALUE));
     }
-}
\ No newline at end of file
+
+    @Test
+    void writtenBehind() throws InterruptedException {
+        // GIVEN
+        CountDownLatch written = new CountDownLatch(1);
+        List<String> writers = new CopyOnWriteArrayList<>();
+        Processor processor = processor(s3Entry -> {
+            writers.add(Thread.currentThread().getName());
+            written.countDown();
+        });
+
+        ClassPathResource image = new ClassPathResource("images/IMG_20181001_185137.jpg");
+        S3Entry entry = S3Entry.builder()
+                .key("test")
+                .contentType(MediaType.IMAGE_JPEG_VALUE)
+                .size(1024)
+                .metaData(Map.of())
+                .resourceSupplier(() -> image)
+                .build();
+
+        // WHEN
+        processor.process(entry);
+
+        // THEN
+        assertTrue(written.await(1, TimeUnit.SECONDS));
+        assertThat(writers.get(0), startsWith("write-behind-metadata-"));
+    }
+
+    private static Processor processor(Consumer<S3Entry> writer) {
+        return new Processor(writer, new WriteBehindQueue("metadata", new S3Config.WriteBehind(), new SimpleMeterRegistry()), new S3Config.Metadata(), new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,119 @@
+package io.zeitmaschine.s3;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zeitmaschine.TestImagesProvider;
+
+class RangedInputStreamTest {
+
+    @Test
+    void rangesDouble() throws IOException {
+        CountingReader reader = new CountingReader(new byte[1000]);
+        RangedInputStream stream = new RangedInputStream(reader, 1000, 100, 1000);
+
+        byte[] read = stream.readAllBytes();
+
+        assertThat(read.length, is(1000));
+        assertThat(reader.ranges, contains(List.of(0L, 100L), List.of(100L, 200L), List.of(300L, 400L), List.of(700L, 300L)));
+    }
+
+    @Test
+    void rangesCapped() throws IOException {
+        CountingReader reader = new CountingReader(new byte[1000]);
+        RangedInputStream stream = new RangedInputStream(reader, 1000, 100, 200);
+
+        stream.readAllBytes();
+
+        assertThat(reader.ranges, contains(List.of(0L, 100L), List.of(100L, 200L), List.of(300L, 200L),
+                List.of(500L, 200L), List.of(700L, 200L), List.of(900L, 100L)));
+    }
+
+    @Test
+    void skipNotFetched() throws IOException {
+        byte[] object = new byte[1000];
+        object[900] = 42;
+        CountingReader reader = new CountingReader(object);
+        RangedInputStream stream = new RangedInputStream(reader, 1000, 10, 1000);
+
+        stream.read();
+        assertThat(stream.skip(899), is(899L));
+        assertThat(stream.read(), is(42));
+        assertThat(stream.skip(1000), is(99L));
+        assertThat(stream.read(), is(-1));
+
+        // starts over with the initial range after the skip
+        assertThat(reader.ranges, contains(List.of(0L, 10L), List.of(900L, 10L)));
+        assertThat(stream.fetched(), is(20L));
+    }
+
+    /*
+    Ranged metadata extraction gets the same metadata as reading the whole object, from a fraction of it. Timed in
+    the benchmarks module, see ExifBenchmark.
+     */
+    @ParameterizedTest
+    @ArgumentsSource(TestImagesProvider.class)
+    void rangedMetadata(Resource image) throws IOException {
+        assumeTrue(image.exists(), "Test image missing.");
+        byte[] object = image.getInputStream().readAllBytes();
+
+        CountingReader ranged = new CountingReader(object);
+        S3Entry rangedEntry = processor(new S3Config.Metadata()).process(entry(object, ranged));
+
+        S3Config.Metadata full = new S3Config.Metadata();
+        full.setRanged(false);
+        S3Entry fullEntry = processor(full).process(entry(object, ranged));
+
+        assertThat(rangedEntry.metaData(), is(fullEntry.metaData()));
+        assertThat(rangedEntry.metaData(), hasKey(Processor.META_CREATION_DATE));
+        assertThat(ranged.fetched, lessThan(object.length / 10L));
+    }
+
+    private static Processor processor(S3Config.Metadata config) {
+        return new Processor(s3Entry -> {}, new WriteBehindQueue("metadata", config.getWriteBack(), new SimpleMeterRegistry()), config, new SimpleMeterRegistry());
+    }
+
+    private static S3Entry entry(byte[] object, RangeReader reader) {
+        return S3Entry.builder()
+                .key("test")
+                .contentType(MediaType.IMAGE_JPEG_VALUE)
+                .size(object.length)
+                .metaData(Map.of())
+                .resourceSupplier(() -> new ByteArrayResource(object))
+                .rangeReader(reader)
+                .build();
+    }
+
+    private static class CountingReader implements RangeReader {
+
+        private final byte[] object;
+        private final List<List<Long>> ranges = new ArrayList<>();
+        private long fetched;
+
+        CountingReader(byte[] object) {
+            this.object = object;
+        }
+
+        @Override
+        public ByteArrayInputStream read(long offset, long length) {
+            ranges.add(List.of(offset, length));
+            fetched += length;
+            return new ByteArrayInputStream(object, (int) offset, (int) length);
+        }
+    }
+}
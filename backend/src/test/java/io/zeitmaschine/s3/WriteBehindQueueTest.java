@@ -0,0 +1,108 @@
+package io.zeitmaschine.s3;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class WriteBehindQueueTest {
+
+    private SimpleMeterRegistry registry;
+    private WriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        S3Config.WriteBehind config = new S3Config.WriteBehind();
+        config.setConcurrency(1);
+        config.setCapacity(2);
+
+        registry = new SimpleMeterRegistry();
+        queue = new WriteBehindQueue("test", config, registry);
+    }
+
+    @Test
+    void droppedWhenFull() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(3);
+        Runnable write = () -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            written.countDown();
+        };
+
+        // one running, two pending
+        assertThat(queue.submit("a", write), is(true));
+        assertThat(queue.submit("b", write), is(true));
+        assertThat(queue.submit("c", write), is(true));
+        assertThat(queue.submit("d", write), is(false));
+        assertThat(gauge(), is(2.0));
+
+        blocked.countDown();
+
+        assertThat(written.await(1, TimeUnit.SECONDS), is(true));
+        assertThat(count("dropped"), is(1.0));
+        awaitIdle();
+        assertThat(count("written"), is(3.0));
+        assertThat(registry.get("s3.write.behind.latency").tag("queue", "test").timer().count(), is(3L));
+    }
+
+    @Test
+    void failuresCounted() throws InterruptedException {
+        queue.submit("a", () -> {
+            throw new RuntimeException("s3 down");
+        });
+
+        awaitIdle();
+        assertThat(count("failed"), is(1.0));
+        assertThat(count("written"), is(0.0));
+    }
+
+    @Test
+    void pendingWrittenOnShutdown() {
+        CountDownLatch written = new CountDownLatch(3);
+        for (String key : new String[]{"a", "b", "c"}) {
+            queue.submit(key, () -> {
+                sleep(50);
+                written.countDown();
+            });
+        }
+
+        queue.shutdown();
+
+        assertThat(written.getCount(), is(0L));
+        assertThat(queue.submit("d", () -> {}), is(false));
+        assertThat(count("dropped"), is(1.0));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (queue.pending() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private double gauge() {
+        return registry.get("s3.write.behind.pending").tag("queue", "test").gauge().value();
+    }
+
+    private double count(String result) {
+        return registry.get("s3.write.behind").tags("queue", "test", "result", result).counter().count();
+    }
+}
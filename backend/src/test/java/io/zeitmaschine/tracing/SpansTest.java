@@ -0,0 +1,124 @@
+package io.zeitmaschine.tracing;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.sleuth.Span;
+import org.springframework.cloud.sleuth.Tracer;
+import org.springframework.cloud.sleuth.brave.bridge.BraveBaggageManager;
+import org.springframework.cloud.sleuth.brave.bridge.BraveCurrentTraceContext;
+import org.springframework.cloud.sleuth.brave.bridge.BraveTracer;
+
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.ThreadLocalCurrentTraceContext;
+import io.micrometer.core.instrument.Tags;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+class SpansTest {
+
+    private static final Tags TAGS = Tags.of("operation", "get", "bucket", "media");
+
+    private final List<MutableSpan> finished = new CopyOnWriteArrayList<>();
+    private Tracing tracing;
+    private Tracer tracer;
+    private Spans spans;
+
+    @BeforeEach
+    void setUp() {
+        tracing = Tracing.newBuilder()
+                .currentTraceContext(ThreadLocalCurrentTraceContext.create())
+                .addSpanHandler(new SpanHandler() {
+                    @Override
+                    public boolean end(brave.propagation.TraceContext context, MutableSpan span, Cause cause) {
+                        finished.add(span);
+                        return true;
+                    }
+                })
+                .build();
+        tracer = new BraveTracer(tracing.tracer(), new BraveCurrentTraceContext(tracing.currentTraceContext()), new BraveBaggageManager());
+        spans = new Spans(tracer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracing.close();
+    }
+
+    @Test
+    void childOfContextSpan() {
+        Span request = tracer.nextSpan().name("request").start();
+
+        // GIVEN a call seeing the context it's subscribed with
+        Span inner = spans.child("s3 get", "s3", TAGS, Mono.deferContextual(context -> Mono.just(context.get(Span.class))))
+                .contextWrite(Context.of(Span.class, request))
+                .block();
+        request.end();
+
+        // THEN the call's span is a child of the request's and in the call's context
+        MutableSpan child = finished.get(0);
+        assertThat(child.name(), is("s3 get"));
+        assertThat(child.remoteServiceName(), is("s3"));
+        assertThat(child.parentId(), is(request.context().spanId()));
+        assertThat(child.tag("bucket"), is("media"));
+        assertThat(child.tag("outcome"), is("success"));
+        assertThat(inner.context().spanId(), is(child.id()));
+    }
+
+    @Test
+    void blockingWorkInScope() {
+        Span request = tracer.nextSpan().name("request").start();
+
+        // WHEN blocking work of the chain runs on a worker and makes a call of its own
+        String traceId = Mono.deferContextual(context -> Mono.fromCallable(spans.wrap(context, () ->
+                        spans.child("s3 stat", "s3", TAGS, () -> tracer.currentSpan().context().traceId()))))
+                .subscribeOn(Schedulers.boundedElastic())
+                .contextWrite(Context.of(Span.class, request))
+                .block();
+        request.end();
+
+        // THEN it's part of the request's trace
+        assertThat(traceId, is(request.context().traceId()));
+        assertThat(finished.get(0).name(), is("s3 stat"));
+        assertThat(finished.get(0).parentId(), is(request.context().spanId()));
+    }
+
+    @Test
+    void noTraceNoSpans() throws Exception {
+        // GIVEN no trace, e.g. a reindex job
+        spans.child("s3 get", "s3", TAGS, Mono.just("object")).block();
+        spans.child("s3 stat", "s3", TAGS, () -> "object");
+
+        // THEN nothing is traced
+        assertThat(finished, empty());
+    }
+
+    @Test
+    void rootStartsTrace() {
+        Span request = tracer.nextSpan().name("request").start();
+
+        spans.root("webhook batch", Tags.of("events", "2"), spans.child("elastic bulk", "elastic", TAGS, Mono.just("indexed")))
+                .contextWrite(Context.of(Span.class, request))
+                .block();
+
+        // THEN a new trace, the request's span isn't the parent
+        assertThat(finished.stream().map(MutableSpan::name).toList(), contains("elastic bulk", "webhook batch"));
+        MutableSpan root = finished.get(1);
+        assertThat(root.parentId(), nullValue());
+        assertThat(root.traceId(), not(request.context().traceId()));
+        assertThat(finished.get(0).parentId(), is(root.id()));
+    }
+}
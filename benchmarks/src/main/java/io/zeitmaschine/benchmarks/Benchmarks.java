@@ -0,0 +1,31 @@
+package io.zeitmaschine.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks like JMH's own main, takes the same arguments, but writes the results as JSON to
+ * jmh-result.json unless told otherwise.
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar [regexp] [-rff results.json]
+ * </pre>
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        if (commandLine.getResultFormat().hasValue() == false) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (commandLine.getResult().hasValue() == false) {
+            options.result("jmh-result.json");
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,82 @@
+package io.zeitmaschine.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zeitmaschine.s3.Processor;
+import io.zeitmaschine.s3.S3Config;
+import io.zeitmaschine.s3.S3Entry;
+import io.zeitmaschine.s3.WriteBehindQueue;
+
+/**
+ * Exif extraction of {@link Processor#process(S3Entry)} on the test images, read from memory. Ranged reads only
+ * fetch the exif segments at the start of the file, instead of the whole object.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExifBenchmark {
+
+    @Param({"IMG_20180614_214734.jpg", "IMG_20181001_185137.jpg"})
+    private String image;
+    @Param({"false", "true"})
+    private boolean ranged;
+
+    private WriteBehindQueue writeBack;
+    private Processor processor;
+    private S3Entry entry;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] bytes;
+        try (InputStream in = new ClassPathResource("images/" + image).getInputStream()) {
+            bytes = in.readAllBytes();
+        }
+        S3Config.Metadata config = new S3Config.Metadata();
+        config.setRanged(ranged);
+        // processed metadata isn't written anywhere
+        writeBack = new WriteBehindQueue("metadata", config.getWriteBack(), new SimpleMeterRegistry());
+        processor = new Processor(processed -> {}, writeBack, config, new SimpleMeterRegistry());
+        entry = S3Entry.builder()
+                .key(image)
+                .contentType(MediaType.IMAGE_JPEG_VALUE)
+                .size(bytes.length)
+                .resourceSupplier(() -> new ByteArrayResource(bytes))
+                .rangeReader((offset, length) -> new ByteArrayInputStream(bytes, (int) offset, (int) length))
+                .metaData(Map.of())
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        writeBack.shutdown();
+    }
+
+    @Benchmark
+    public S3Entry process() {
+        return processor.process(entry);
+    }
+}
@@ -0,0 +1,43 @@
+package io.zeitmaschine.benchmarks;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.zeitmaschine.index.Image;
+import io.zeitmaschine.s3.S3Entry;
+
+/**
+ * Serialization of the indexed document, once per image in every bulk request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageJsonBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Image image = Image.from("2018/IMG_20181001_185137.jpg")
+            .createDate(new Date(1538412697000L))
+            .location(new S3Entry.Location(8.539183, 47.378177))
+            .build();
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(image);
+    }
+}
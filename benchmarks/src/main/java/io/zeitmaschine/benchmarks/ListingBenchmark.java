@@ -0,0 +1,96 @@
+package io.zeitmaschine.benchmarks;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zeitmaschine.load.LocalS3;
+import io.zeitmaschine.s3.MinioRepository;
+import io.zeitmaschine.s3.Processor;
+import io.zeitmaschine.s3.S3Config;
+import io.zeitmaschine.s3.S3Entry;
+
+/**
+ * Listing and stat throughput of the {@link MinioRepository} against a {@link LocalS3}, the objects laid out in a
+ * folder per year like the bucket usually is.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingBenchmark {
+
+    private final static String BUCKET = "media";
+    private final static int YEARS = 10;
+
+    @Param({"1", "4"})
+    private int fanOut;
+
+    @Param({"10000"})
+    private int objects;
+
+    private LocalS3 s3;
+    private MinioRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        s3 = new LocalS3();
+        for (int i = 0; i < objects; i++) {
+            s3.put(BUCKET, key(i), new byte[0], MediaType.IMAGE_JPEG_VALUE, Map.of(Processor.META_VERSION, Processor.META_VERSION_CURRENT));
+        }
+        S3Config.Access access = new S3Config.Access();
+        access.setKey("benchmark");
+        access.setSecret("benchmark");
+        S3Config config = new S3Config();
+        config.setBucket(BUCKET);
+        config.setAccess(access);
+        config.getListing().setFanOut(fanOut);
+        repository = new MinioRepository(config, s3.client(), new SimpleMeterRegistry());
+        if (list() != objects) {
+            throw new IllegalStateException("Listing is incomplete.");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        s3.close();
+    }
+
+    // the whole bucket per operation, objects per second is objects / score
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Long list() {
+        return repository.list("", null).count().block();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(8)
+    public S3Entry get() {
+        return repository.get(BUCKET, key(ThreadLocalRandom.current().nextInt(objects))).block();
+    }
+
+    private String key(int i) {
+        return "%d/IMG_%08d.jpg".formatted(2012 + i % YEARS, i);
+    }
+}
@@ -0,0 +1,50 @@
+package io.zeitmaschine.benchmarks;
+
+import static io.zeitmaschine.s3.Processor.*;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.zeitmaschine.s3.S3Entry;
+
+/**
+ * Parsing of the processed metadata, done for every listed entry when indexing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class S3EntryBenchmark {
+
+    private final S3Entry entry = S3Entry.builder()
+            .key("2018/IMG_20181001_185137.jpg")
+            .metaData(Map.of(
+                    META_VERSION, META_VERSION_CURRENT,
+                    META_CREATION_DATE, "1538412697000",
+                    META_LOCATION_LON, "8.539183",
+                    META_LOCATION_LAT, "47.378177"))
+            .build();
+
+    @Benchmark
+    public Date created() {
+        return entry.created();
+    }
+
+    @Benchmark
+    public S3Entry.Location location() {
+        return entry.location();
+    }
+}
@@ -1,5 +1,5 @@
 import axios from 'axios'
-import { Image } from './image'
+import { Image, Page } from './image'
 import { Cache } from './cache'
 import { NullCache } from './null-cache'
 import { ImageCache } from './image-cache'
@@ -7,27 +7,20 @@ import { ImageCache } from './image-cache'
 const PAGING_SIZE = 64
 
 class ImageService {
-    private readonly endpoint: string;
     private imageCache: Cache = new NullCache();
 
     constructor () {
-      this.endpoint = process.env.VUE_APP_ZM_ELASTIC_ENDPOINT
-      console.log('creating new instance of image-service with endpoint: ' + this.endpoint)
       new ImageCache().initialize().then(cache => { this.imageCache = cache })
     }
 
-    public getImages (from = 0) {
-      return axios.post<Image[]>(this.endpoint, {
-        from,
-        size: PAGING_SIZE,
-        sort: [
-          { created: { order: 'desc' } }
-        ]
-      }, {
-        transformResponse: data => {
-          const json = JSON.parse(data)
-          return (json.hits) ? this.transform(json.hits) : []
-        }
+    // the first page without a cursor, the following ones with the previous page's next
+    public getImages (cursor: string | null = null) {
+      return axios.get<Page>('gallery', {
+        params: {
+          size: PAGING_SIZE,
+          cursor: cursor || undefined
+        },
+        transformResponse: data => this.transform(JSON.parse(data))
       })
     }
 
@@ -44,14 +37,16 @@ class ImageService {
         })
     }
 
-    private transform (json: any): Image[] {
-      return json.hits.map((hit: any) => {
-        return {
-          name: hit._source.name,
-          thumbnail: hit._source.thumbnail,
-          date: hit._source.created
-        }
-      })
+    private transform (json: any): Page {
+      return {
+        images: (json.images || []).map((image: any): Image => {
+          return {
+            name: image.name,
+            date: image.created
+          }
+        }),
+        next: json.next || null
+      }
     }
 }
 
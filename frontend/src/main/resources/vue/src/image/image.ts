@@ -2,3 +2,9 @@ export interface Image {
     name: string;
     date: Date;
 }
+
+// next is the cursor of the following page, null on the last one
+export interface Page {
+    images: Image[];
+    next: string | null;
+}
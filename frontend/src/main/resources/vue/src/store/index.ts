@@ -1,11 +1,14 @@
 import { InjectionKey } from 'vue'
 import { createStore, Store } from 'vuex'
-import { Image } from '../image/image'
+import { Image, Page } from '../image/image'
 import { imageService } from '../image/image-service'
 
 // define your typings for the store state
 export interface State {
   images: Image[];
+  // cursor of the next page, null before the first and after the last page
+  next: string | null;
+  end: boolean;
 }
 
 // define injection key
@@ -13,17 +16,24 @@ export const key: InjectionKey<Store<State>> = Symbol('Injection key for the sto
 
 export const store: Store<State> = createStore<State>({
   state: {
-    images: []
+    images: [],
+    next: null,
+    end: false
   },
   mutations: {
-    addImages (state, images: Image[]) {
-      state.images.push(...images)
+    addPage (state, page: Page) {
+      state.images.push(...page.images)
+      state.next = page.next
+      state.end = page.next === null
     }
   },
   actions: {
-    loadImages ({ commit }) {
-      imageService.getImages(this.state.images.length)
-        .then(response => commit('addImages', response.data))
+    loadImages ({ commit, state }) {
+      if (state.end) {
+        return
+      }
+      imageService.getImages(state.next)
+        .then(response => commit('addPage', response.data))
         .catch(reason => console.log('Failed', reason))
     }
   }
@@ -19,6 +19,10 @@ module.exports = {
       '/image/*': {
         target: 'http://localhost:8080',
         secure: false
+      },
+      '/gallery': {
+        target: 'http://localhost:8080',
+        secure: false
       }
     }
   }
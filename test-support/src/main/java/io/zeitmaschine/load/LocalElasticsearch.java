@@ -0,0 +1,116 @@
+package io.zeitmaschine.load;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.ReadContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Stand-in for elasticsearch: accepts the index, bulk and delete requests of the indexer and counts the documents,
+ * searches page through a fixed list of image names, by offset or after a name. The images have no creation date.
+ */
+public class LocalElasticsearch implements AutoCloseable {
+
+    private final static Configuration LENIENT = Configuration.defaultConfiguration().addOptions(Option.DEFAULT_PATH_LEAF_TO_NULL, Option.SUPPRESS_EXCEPTIONS);
+
+    private final List<String> names;
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final AtomicLong indexed = new AtomicLong();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(16);
+
+    // searches return the names in this order
+    public LocalElasticsearch(List<String> names) throws IOException {
+        this.names = names;
+        for (int i = 0; i < names.size(); i++) {
+            positions.put(names.get(i), i);
+        }
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    public String host() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    // documents received by bulk requests
+    public long indexed() {
+        return indexed.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            if (path.endsWith("/_bulk")) {
+                // an action and a document line per item
+                long lines = new String(body, UTF_8).lines().filter(line -> !line.isBlank()).count();
+                indexed.addAndGet(lines / 2);
+                respond(exchange, "{\"took\":1,\"errors\":false}");
+            } else if (path.endsWith("/_search")) {
+                respond(exchange, search(new String(body, UTF_8)));
+            } else if (path.endsWith("/_delete_by_query")) {
+                respond(exchange, "{\"deleted\":0}");
+            } else if ("HEAD".equals(exchange.getRequestMethod())) {
+                // the jdk server closes the connection after a HEAD, the client must not reuse it
+                exchange.getResponseHeaders().set("Connection", "close");
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                respond(exchange, "{\"acknowledged\":true}");
+            }
+        }
+    }
+
+    private String search(String query) {
+        ReadContext request = JsonPath.using(LENIENT).parse(query.isBlank() ? "{}" : query);
+        Integer from = request.read("$.from");
+        Integer size = request.read("$.size");
+        // sorted by the missing creation date, then by name
+        String after = request.read("$.search_after[1]");
+        int start = Math.min(after != null ? positions.getOrDefault(after, names.size() - 1) + 1 : from != null ? from : 0, names.size());
+        int end = Math.min(start + (size != null ? size : 10), names.size());
+        String hits = IntStream.range(start, end)
+                .mapToObj(i -> "{\"_index\":\"zeitmaschine\",\"_id\":\"%d\",\"_score\":null,\"_source\":{\"name\":\"%s\",\"created\":null,\"location\":null},\"sort\":[%d,\"%s\"]}"
+                        .formatted(i, names.get(i), Long.MIN_VALUE, names.get(i)))
+                .collect(Collectors.joining(","));
+        return "{\"took\":1,\"timed_out\":false,\"hits\":{\"total\":{\"value\":%d,\"relation\":\"eq\"},\"hits\":[%s]}}"
+                .formatted(names.size(), hits);
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.zeitmaschine.load;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Stand-in for imaginary's resize: reads the whole original and answers with the same small jpeg after a fixed
+ * latency, the time a resize takes.
+ */
+public class LocalImaginary implements AutoCloseable {
+
+    private final Duration latency;
+    private final byte[] rendition;
+    private final AtomicLong resized = new AtomicLong();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(16);
+
+    public LocalImaginary(Duration latency) throws IOException {
+        this.latency = latency;
+        this.rendition = jpeg(250);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/resize", this::resize);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    public String host() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long resized() {
+        return resized.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void resize(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream in = exchange.getRequestBody()) {
+            in.readAllBytes();
+            Thread.sleep(latency.toMillis());
+            resized.incrementAndGet();
+            exchange.getResponseHeaders().set("Content-Type", "image/jpeg");
+            exchange.sendResponseHeaders(200, rendition.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(rendition);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] jpeg(int width) throws IOException {
+        BufferedImage image = new BufferedImage(width, width * 3 / 4, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+}
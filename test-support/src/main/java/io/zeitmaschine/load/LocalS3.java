@@ -0,0 +1,345 @@
+package io.zeitmaschine.load;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.minio.MinioClient;
+
+/**
+ * Stand-in for the S3 API, just enough of it for the minio client calls the application makes: buckets and their
+ * notification config, ListObjectsV2 with user metadata, stat, (ranged) get, put and the metadata replacing copy.
+ * Served from memory on localhost, it keeps measurements about the client side rather than about a real S3 and the
+ * network in between.
+ */
+public class LocalS3 implements AutoCloseable {
+
+    private final static String LAST_MODIFIED = "2018-10-01T18:51:37.000Z";
+    private final static String LAST_MODIFIED_HEADER = "Mon, 01 Oct 2018 18:51:37 GMT";
+    private final static String NAMESPACE = "http://s3.amazonaws.com/doc/2006-03-01/";
+    private final static String META = "x-amz-meta-";
+
+    private final Map<String, NavigableMap<String, Item>> buckets = new ConcurrentHashMap<>();
+    // arrays hash by identity, seeding many objects with the same content hashes it once
+    private final Map<byte[], String> etags = new ConcurrentHashMap<>();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(32);
+
+    private record Item(byte[] content, String etag, String contentType, Map<String, String> metaData) {}
+
+    public LocalS3() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    public String host() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void create(String bucket) {
+        bucket(bucket);
+    }
+
+    // metaData as the processor writes it, e.g. zm-meta-version
+    public void put(String bucket, String key, byte[] content, String contentType, Map<String, String> metaData) {
+        bucket(bucket).put(key, new Item(content, etags.computeIfAbsent(content, LocalS3::md5), contentType, metaData));
+    }
+
+    public int size(String bucket) {
+        return bucket(bucket).size();
+    }
+
+    public MinioClient client() {
+        return MinioClient.builder()
+                .endpoint(host())
+                .credentials("local", "local")
+                // no bucket location lookup
+                .region("us-east-1")
+                .build();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private NavigableMap<String, Item> bucket(String bucket) {
+        return buckets.computeIfAbsent(bucket, name -> new ConcurrentSkipListMap<>());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getRawPath();
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            if (path.equals("/minio/health/live")) {
+                respond(exchange, 200, null, null);
+                return;
+            }
+            int slash = path.indexOf('/', 1);
+            String bucket = URLDecoder.decode(slash < 0 ? path.substring(1) : path.substring(1, slash), UTF_8);
+            String key = slash < 0 || slash == path.length() - 1 ? null : URLDecoder.decode(path.substring(slash + 1), UTF_8);
+            if (key == null) {
+                bucket(exchange, bucket, query);
+            } else if (!buckets.containsKey(bucket)) {
+                respond(exchange, 404, "application/xml", error(exchange, "NoSuchBucket"));
+            } else {
+                object(exchange, bucket, key);
+            }
+        }
+    }
+
+    private void bucket(HttpExchange exchange, String bucket, Map<String, String> query) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (query.containsKey("location")) {
+            respond(exchange, 200, "application/xml", xml("<LocationConstraint xmlns=\"" + NAMESPACE + "\">us-east-1</LocationConstraint>"));
+        } else if (query.containsKey("notification")) {
+            exchange.getRequestBody().readAllBytes();
+            respond(exchange, 200, "application/xml", "GET".equals(method)
+                    ? xml("<NotificationConfiguration xmlns=\"" + NAMESPACE + "\"></NotificationConfiguration>")
+                    : null);
+        } else if ("PUT".equals(method)) {
+            bucket(bucket);
+            respond(exchange, 200, null, null);
+        } else if (!buckets.containsKey(bucket)) {
+            respond(exchange, 404, "application/xml", error(exchange, "NoSuchBucket"));
+        } else if ("HEAD".equals(method)) {
+            respond(exchange, 200, null, null);
+        } else {
+            list(exchange, bucket, query);
+        }
+    }
+
+    private void object(HttpExchange exchange, String bucket, String key) throws IOException {
+        String method = exchange.getRequestMethod();
+        if ("PUT".equals(method)) {
+            put(exchange, bucket, key);
+            return;
+        }
+        if ("DELETE".equals(method)) {
+            buckets.get(bucket).remove(key);
+            respond(exchange, 204, null, null);
+            return;
+        }
+        Item item = buckets.get(bucket).get(key);
+        if (item == null) {
+            respond(exchange, 404, "application/xml", error(exchange, "NoSuchKey"));
+            return;
+        }
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", "\"" + item.etag() + "\"");
+        headers.set("Last-Modified", LAST_MODIFIED_HEADER);
+        item.metaData().forEach((name, value) -> headers.set(META + name, value));
+        if ("HEAD".equals(method)) {
+            headers.set("Content-Type", item.contentType());
+            headers.set("Content-Length", String.valueOf(item.content().length));
+            respond(exchange, 200, null, null);
+            return;
+        }
+        byte[] content = item.content();
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        int status = 200;
+        if (range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            int from = Integer.parseInt(bounds[0]);
+            int to = bounds.length > 1 ? Math.min(Integer.parseInt(bounds[1]), content.length - 1) : content.length - 1;
+            byte[] part = new byte[Math.max(0, to - from + 1)];
+            System.arraycopy(content, from, part, 0, part.length);
+            content = part;
+            status = 206;
+        }
+        respond(exchange, status, item.contentType(), content);
+    }
+
+    // a plain put or a copy onto itself replacing the metadata
+    private void put(HttpExchange exchange, String bucket, String key) throws IOException {
+        Headers request = exchange.getRequestHeaders();
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readAllBytes();
+        }
+        Map<String, String> metaData = new HashMap<>();
+        request.forEach((name, values) -> {
+            if (name.toLowerCase().startsWith(META)) {
+                metaData.put(name.substring(META.length()).toLowerCase(), values.get(0));
+            }
+        });
+        String contentType = request.getFirst("Content-Type");
+        String source = request.getFirst("x-amz-copy-source");
+        if (source == null) {
+            Item item = new Item(body, md5(body), contentType != null ? contentType : "application/octet-stream", metaData);
+            bucket(bucket).put(key, item);
+            exchange.getResponseHeaders().set("ETag", "\"" + item.etag() + "\"");
+            respond(exchange, 200, null, null);
+            return;
+        }
+        String[] copied = URLDecoder.decode(source.startsWith("/") ? source.substring(1) : source, UTF_8).split("/", 2);
+        Item original = buckets.getOrDefault(copied[0], new ConcurrentSkipListMap<>()).get(copied[1]);
+        if (original == null) {
+            respond(exchange, 404, "application/xml", error(exchange, "NoSuchKey"));
+            return;
+        }
+        boolean replace = "REPLACE".equals(request.getFirst("x-amz-metadata-directive"));
+        Item item = new Item(original.content(), original.etag(),
+                replace && contentType != null ? contentType : original.contentType(),
+                replace ? metaData : original.metaData());
+        bucket(bucket).put(key, item);
+        respond(exchange, 200, "application/xml", xml("<CopyObjectResult><LastModified>" + LAST_MODIFIED
+                + "</LastModified><ETag>&quot;" + item.etag() + "&quot;</ETag></CopyObjectResult>"));
+    }
+
+    // ListObjectsV2, the continuation token is the last key or common prefix of the page
+    private void list(HttpExchange exchange, String bucket, Map<String, String> query) throws IOException {
+        NavigableMap<String, Item> objects = buckets.get(bucket);
+        String prefix = query.getOrDefault("prefix", "");
+        String delimiter = query.getOrDefault("delimiter", "");
+        int maxKeys = Integer.parseInt(query.getOrDefault("max-keys", "1000"));
+        String after = query.getOrDefault("continuation-token", query.get("start-after"));
+
+        StringBuilder contents = new StringBuilder();
+        TreeSet<String> commonPrefixes = new TreeSet<>();
+        String last = null;
+        int count = 0;
+        boolean truncated = false;
+        NavigableMap<String, Item> from = after != null ? objects.tailMap(after, false) : objects.tailMap(prefix, true);
+        for (Map.Entry<String, Item> object : from.entrySet()) {
+            String key = object.getKey();
+            if (!key.startsWith(prefix)) {
+                break;
+            }
+            if (after != null && !delimiter.isEmpty() && after.endsWith(delimiter) && key.startsWith(after)) {
+                // within the common prefix of the last page
+                continue;
+            }
+            int delimited = delimiter.isEmpty() ? -1 : key.indexOf(delimiter, prefix.length());
+            String commonPrefix = delimited >= 0 ? key.substring(0, delimited + delimiter.length()) : null;
+            if (commonPrefix != null && commonPrefixes.contains(commonPrefix)) {
+                continue;
+            }
+            if (count == maxKeys) {
+                truncated = true;
+                break;
+            }
+            count++;
+            if (commonPrefix != null) {
+                commonPrefixes.add(commonPrefix);
+                last = commonPrefix;
+            } else {
+                Item item = object.getValue();
+                contents.append("<Contents><Key>").append(escape(key)).append("</Key>")
+                        .append("<LastModified>").append(LAST_MODIFIED).append("</LastModified>")
+                        .append("<ETag>&quot;").append(item.etag()).append("&quot;</ETag>")
+                        .append("<Size>").append(item.content().length).append("</Size>")
+                        .append("<StorageClass>STANDARD</StorageClass>")
+                        .append("<UserMetadata><content-type>").append(item.contentType()).append("</content-type>");
+                item.metaData().forEach((name, value) -> contents.append("<X-Amz-Meta-").append(capitalize(name)).append(">")
+                        .append(escape(value)).append("</X-Amz-Meta-").append(capitalize(name)).append(">"));
+                contents.append("</UserMetadata></Contents>");
+                last = key;
+            }
+        }
+
+        StringBuilder xml = new StringBuilder()
+                .append("<ListBucketResult xmlns=\"").append(NAMESPACE).append("\">")
+                .append("<Name>").append(escape(bucket)).append("</Name>")
+                .append("<Prefix>").append(escape(prefix)).append("</Prefix>")
+                .append("<KeyCount>").append(count).append("</KeyCount>")
+                .append("<MaxKeys>").append(maxKeys).append("</MaxKeys>")
+                .append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (!delimiter.isEmpty()) {
+            xml.append("<Delimiter>").append(escape(delimiter)).append("</Delimiter>");
+        }
+        if (truncated) {
+            xml.append("<NextContinuationToken>").append(escape(last)).append("</NextContinuationToken>");
+        }
+        xml.append(contents);
+        commonPrefixes.forEach(commonPrefix -> xml.append("<CommonPrefixes><Prefix>").append(escape(commonPrefix)).append("</Prefix></CommonPrefixes>"));
+        xml.append("</ListBucketResult>");
+        respond(exchange, 200, "application/xml", xml(xml.toString()));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        if (contentType != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            // the jdk server closes the connection after a HEAD, the client must not reuse it
+            exchange.getResponseHeaders().set("Connection", "close");
+        }
+        if (body == null || "HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] xml(String content) {
+        return ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + content).getBytes(UTF_8);
+    }
+
+    private static byte[] error(HttpExchange exchange, String code) {
+        return xml("<Error><Code>" + code + "</Code><Message>" + code + "</Message><Resource>"
+                + escape(exchange.getRequestURI().getPath()) + "</Resource><RequestId>0</RequestId><HostId>0</HostId></Error>");
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> query = new HashMap<>();
+        if (raw != null) {
+            for (String parameter : List.of(raw.split("&"))) {
+                int equals = parameter.indexOf('=');
+                String name = equals < 0 ? parameter : parameter.substring(0, equals);
+                String value = equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), UTF_8);
+                query.put(URLDecoder.decode(name, UTF_8), value);
+            }
+        }
+        return query;
+    }
+
+    // zm-meta-version -> Zm-Meta-Version, as minio lists user metadata
+    private static String capitalize(String name) {
+        StringBuilder capitalized = new StringBuilder(name.length());
+        boolean upper = true;
+        for (char c : name.toCharArray()) {
+            capitalized.append(upper ? Character.toUpperCase(c) : c);
+            upper = c == '-';
+        }
+        return capitalized.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static String md5(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}